@@ -1,24 +1,45 @@
 package cz.inventi.jsontocsvconverter;
 
+import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
-import com.jayway.jsonpath.PathNotFoundException;
 import cz.inventi.jsontocsvconverter.model.*;
+import cz.inventi.jsontocsvconverter.generator.FlatRowExtractor;
+import cz.inventi.jsontocsvconverter.generator.RowIterator;
 import cz.inventi.jsontocsvconverter.model.csvdefinitions.FileCsvDefinition;
+import cz.inventi.jsontocsvconverter.streaming.JsonStreamReader;
+import cz.inventi.jsontocsvconverter.streaming.JsonValueType;
+import cz.inventi.jsontocsvconverter.streaming.ParallelJsonLinesConverter;
+import cz.inventi.jsontocsvconverter.streaming.SplitConverter;
+import cz.inventi.jsontocsvconverter.streaming.StreamingConverter;
+import cz.inventi.jsontocsvconverter.utils.ByteBufferReader;
 import cz.inventi.jsontocsvconverter.utils.CsvUtils;
 import cz.inventi.jsontocsvconverter.utils.FileUtils;
 import cz.inventi.jsontocsvconverter.utils.JsonUtils;
-import cz.inventi.jsontocsvconverter.utils.ListUtils;
+import cz.inventi.jsontocsvconverter.utils.ThreadUtils;
+import cz.inventi.jsontocsvconverter.writer.CsvRowWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Converts JSON file to CSV based on provided {@link CsvDefinition}.
@@ -35,8 +56,24 @@ public class JsonToCsvConverter {
    * @throws IOException when some I/O problem occurred
    */
   public void convert(String source, CsvDefinition csvDefinition) throws IOException {
+    convert(source, new ConversionPlan(csvDefinition));
+  }
+
+  /**
+   * Convert source JSON file to new created CSV target file. With split path the file is converted
+   * item by item (see {@link SplitConverter}).
+   *
+   * @param source source JSON filename
+   * @param plan   compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(String source, ConversionPlan plan) throws IOException {
+    if (plan.getSplitPath() != null) {
+      convertStream(new ByteBufferReader(FileUtils.mapFile(new File(source))), plan);
+      return;
+    }
     DocumentContext jsonContext = JsonUtils.parseJsonFile(source);
-    convert(jsonContext, csvDefinition);
+    convert(jsonContext, plan);
   }
 
   /**
@@ -47,260 +84,768 @@ public class JsonToCsvConverter {
    * @throws IOException when some I/O problem occurred
    */
   public void convert(File source, CsvDefinition csvDefinition) throws IOException {
+    convert(source, new ConversionPlan(csvDefinition));
+  }
+
+  /**
+   * Convert source JSON file to new created CSV target file. With split path the file is converted
+   * item by item (see {@link SplitConverter}).
+   *
+   * @param source source JSON file
+   * @param plan   compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(File source, ConversionPlan plan) throws IOException {
+    if (plan.getSplitPath() != null) {
+      convertStream(new ByteBufferReader(FileUtils.mapFile(source)), plan);
+      return;
+    }
     DocumentContext jsonContext = JsonUtils.parseJsonFile(source);
-    convert(jsonContext, csvDefinition);
+    convert(jsonContext, plan);
   }
 
   /**
-   * Convert source JSON file to new created CSV target file.
+   * Convert source JSON stream to new created CSV target file.
+   * <p>
+   * The stream is converted while it is read, the whole JSON document is never loaded to memory
+   * (see {@link StreamingConverter}).
    *
-   * @param source        source JSON file
+   * @param source        source JSON stream
    * @param csvDefinition definition of target CSV format
    * @throws IOException when some I/O problem occurred
    */
   public void convert(InputStream source, CsvDefinition csvDefinition) throws IOException {
-    DocumentContext jsonContext = JsonUtils.parseJsonFile(source);
-    convert(jsonContext, csvDefinition);
+    convert(source, new ConversionPlan(csvDefinition));
   }
 
-  private void convert(DocumentContext jsonContext, CsvDefinition csvDefinition) throws IOException {
-    if (csvDefinition instanceof FileCsvDefinition) {
-      String targetDirectory = Paths.get(((FileCsvDefinition) csvDefinition).getFileName()).getParent().toString();
-      FileUtils.ensureTargetDirectoryExists(targetDirectory);
+  /**
+   * Convert source JSON stream to new created CSV target file.
+   * <p>
+   * The stream is converted while it is read, the whole JSON document is never loaded to memory
+   * (see {@link StreamingConverter} and {@link SplitConverter}).
+   *
+   * @param source source JSON stream
+   * @param plan   compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(InputStream source, ConversionPlan plan) throws IOException {
+    CsvDefinition csvDefinition = plan.getCsvDefinition();
+    if (plan.getSplitPath() == null && !plan.isStreamable()) {
+      log.debug("CSV definition {} can't be converted by streaming, whole JSON is loaded.", csvDefinition.getName());
+      DocumentContext jsonContext = JsonUtils.parseJsonFile(source);
+      convert(jsonContext, plan);
+      return;
     }
-    convertJsonToCsv(jsonContext, csvDefinition);
+    convertStream(new InputStreamReader(source, StandardCharsets.UTF_8), plan);
   }
 
   /**
-   * Converts part of JSON to specified CSV file.
+   * Convert source UTF-8 JSON bytes to new created CSV target file. The bytes are never decoded
+   * to a {@link String}, they are converted while they are decoded (see {@link StreamingConverter}) or parsed
+   * directly, when csvDefinition can't be converted by streaming.
+   *
+   * @param source        source JSON bytes
+   * @param csvDefinition definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(byte[] source, CsvDefinition csvDefinition) throws IOException {
+    convert(ByteBuffer.wrap(source), new ConversionPlan(csvDefinition));
+  }
+
+  /**
+   * Convert source UTF-8 JSON bytes to new created CSV target file (see {@link #convert(byte[], CsvDefinition)}).
+   *
+   * @param source source JSON bytes
+   * @param plan   compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(byte[] source, ConversionPlan plan) throws IOException {
+    convert(ByteBuffer.wrap(source), plan);
+  }
+
+  /**
+   * Convert source UTF-8 JSON bytes between position and limit of the buffer to new created CSV target file
+   * (see {@link #convert(byte[], CsvDefinition)}). The position of the buffer isn't changed.
+   *
+   * @param source        source JSON bytes (heap or direct buffer)
+   * @param csvDefinition definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(ByteBuffer source, CsvDefinition csvDefinition) throws IOException {
+    convert(source, new ConversionPlan(csvDefinition));
+  }
+
+  /**
+   * Convert source UTF-8 JSON bytes between position and limit of the buffer to new created CSV target file
+   * (see {@link #convert(byte[], CsvDefinition)}). The position of the buffer isn't changed.
+   *
+   * @param source source JSON bytes (heap or direct buffer)
+   * @param plan   compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(ByteBuffer source, ConversionPlan plan) throws IOException {
+    if (plan.getSplitPath() == null && !plan.isStreamable()) {
+      log.debug("CSV definition {} can't be converted by streaming, whole JSON is parsed.",
+          plan.getCsvDefinition().getName());
+      convert(JsonUtils.parseJson(source), plan);
+      return;
+    }
+    convertStream(new ByteBufferReader(source), plan);
+  }
+
+  /**
+   * Convert already parsed JSON to new created CSV target file.
    *
    * @param jsonContext   source JSON context
    * @param csvDefinition definition of target CSV format
    * @throws IOException when some I/O problem occurred
    */
-  private void convertJsonToCsv(DocumentContext jsonContext, CsvDefinition csvDefinition)
-          throws IOException {
-    log.debug("Converting JSON file to CSV file {}.", csvDefinition.getName());
-    JsonPath root = getJsonPathsTree(jsonContext, csvDefinition);
+  public void convert(DocumentContext jsonContext, CsvDefinition csvDefinition) throws IOException {
+    convert(jsonContext, new ConversionPlan(csvDefinition));
+  }
 
-    log.debug("Generating CSV file {}.", csvDefinition.getName());
-    CsvUtils.createCsvFile(csvDefinition);
+  /**
+   * Convert already parsed JSON to new created CSV target file.
+   *
+   * @param jsonContext source JSON context
+   * @param plan        compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(DocumentContext jsonContext, ConversionPlan plan) throws IOException {
+    ensureTargetDirectoryExists(plan.getCsvDefinition());
+    convertJsonToCsv(jsonContext, plan);
+  }
+
+  /**
+   * Convert already parsed JSON object to new created CSV target file. The tree is used as it is (it isn't copied),
+   * objects have to be {@link Map}s and arrays {@link List}s.
+   *
+   * @param json          source JSON object
+   * @param csvDefinition definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(Map<String, ?> json, CsvDefinition csvDefinition) throws IOException {
+    convert(json, new ConversionPlan(csvDefinition));
+  }
+
+  /**
+   * Convert already parsed JSON object to new created CSV target file (see {@link #convert(Map, CsvDefinition)}).
+   *
+   * @param json source JSON object
+   * @param plan compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(Map<String, ?> json, ConversionPlan plan) throws IOException {
+    convert(wrapJson(json), plan);
+  }
+
+  /**
+   * Convert already parsed JSON array to new created CSV target file. The tree is used as it is (it isn't copied),
+   * objects have to be {@link Map}s and arrays {@link List}s.
+   *
+   * @param json          source JSON array
+   * @param csvDefinition definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(List<?> json, CsvDefinition csvDefinition) throws IOException {
+    convert(json, new ConversionPlan(csvDefinition));
+  }
+
+  /**
+   * Convert already parsed JSON array to new created CSV target file (see {@link #convert(List, CsvDefinition)}).
+   *
+   * @param json source JSON array
+   * @param plan compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(List<?> json, ConversionPlan plan) throws IOException {
+    convert(wrapJson(json), plan);
+  }
 
-    log.trace("Start generating CSV file {} rows.", csvDefinition.getName());
-    List<CsvCell> row = new ArrayList<>();
-    for (JsonPath path : root.getChildren()) {
-      generateRow(csvDefinition, path, row, new ArrayList<>(), jsonContext);
+  /**
+   * Converts JSON read from reader while it is read, item by item of split path if the plan defines it
+   * (see {@link SplitConverter}), otherwise by {@link StreamingConverter}.
+   *
+   * @param source source JSON characters
+   * @param plan   streamable compiled definition of target CSV format or definition with split path
+   * @throws IOException when some I/O problem occurred
+   */
+  private void convertStream(Reader source, ConversionPlan plan) throws IOException {
+    CsvDefinition csvDefinition = plan.getCsvDefinition();
+    ensureTargetDirectoryExists(csvDefinition);
+
+    log.debug("Converting JSON stream to CSV file {}.", csvDefinition.getName());
+    try (CsvRowWriter writer = CsvUtils.openRowWriter(csvDefinition)) {
+      writer.writeHeader();
+      JsonStreamReader reader = new JsonStreamReader(source);
+      if (plan.getSplitPath() != null) {
+        new SplitConverter(plan, writer).convertNext(reader);
+      } else {
+        new StreamingConverter(plan, writer).convertNext(reader);
+      }
     }
     log.info("CSV file {} was successfully created.", csvDefinition.getName());
   }
 
   /**
-   * Constructs tree of JSON paths, that should be converted according to TableData.
+   * @param json parsed JSON tree
+   * @return JSON context of the tree (without parsing)
+   */
+  private static DocumentContext wrapJson(Object json) {
+    return com.jayway.jsonpath.JsonPath.using(Configuration.defaultConfiguration()).parse(json);
+  }
+
+  /**
+   * Convert source JSON file to new created CSV target files of all definitions. The JSON is parsed only once
+   * and shared by all definitions.
    *
-   * @param jsonContext   loaded JSON context
+   * @param source         source JSON filename
+   * @param csvDefinitions definitions of target CSV formats
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(String source, Collection<CsvDefinition> csvDefinitions) throws IOException {
+    convert(source, csvDefinitions, 1);
+  }
+
+  /**
+   * Convert source JSON file to new created CSV target files of all definitions on more threads.
+   * The JSON is parsed only once and shared by all definitions, every definition is converted by one thread.
+   *
+   * @param source         source JSON filename
+   * @param csvDefinitions definitions of target CSV formats
+   * @param threads        maximal number of definitions converted at the same time
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(String source, Collection<CsvDefinition> csvDefinitions, int threads) throws IOException {
+    DocumentContext jsonContext = JsonUtils.parseJsonFile(source);
+    convert(jsonContext, csvDefinitions, threads);
+  }
+
+  /**
+   * Convert source JSON file to new created CSV target files of all definitions. The JSON is parsed only once
+   * and shared by all definitions.
+   *
+   * @param source         source JSON file
+   * @param csvDefinitions definitions of target CSV formats
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(File source, Collection<CsvDefinition> csvDefinitions) throws IOException {
+    convert(source, csvDefinitions, 1);
+  }
+
+  /**
+   * Convert source JSON file to new created CSV target files of all definitions on more threads.
+   * The JSON is parsed only once and shared by all definitions, every definition is converted by one thread.
+   *
+   * @param source         source JSON file
+   * @param csvDefinitions definitions of target CSV formats
+   * @param threads        maximal number of definitions converted at the same time
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(File source, Collection<CsvDefinition> csvDefinitions, int threads) throws IOException {
+    DocumentContext jsonContext = JsonUtils.parseJsonFile(source);
+    convert(jsonContext, csvDefinitions, threads);
+  }
+
+  /**
+   * Convert source JSON stream to new created CSV target files of all definitions. The whole JSON is loaded
+   * (the stream can be read only once) and shared by all definitions.
+   *
+   * @param source         source JSON stream
+   * @param csvDefinitions definitions of target CSV formats
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(InputStream source, Collection<CsvDefinition> csvDefinitions) throws IOException {
+    convert(source, csvDefinitions, 1);
+  }
+
+  /**
+   * Convert source JSON stream to new created CSV target files of all definitions on more threads. The whole JSON
+   * is loaded (the stream can be read only once) and shared by all definitions, every definition is converted
+   * by one thread.
+   *
+   * @param source         source JSON stream
+   * @param csvDefinitions definitions of target CSV formats
+   * @param threads        maximal number of definitions converted at the same time
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convert(InputStream source, Collection<CsvDefinition> csvDefinitions, int threads)
+      throws IOException {
+    DocumentContext jsonContext = JsonUtils.parseJsonFile(source);
+    convert(jsonContext, csvDefinitions, threads);
+  }
+
+  /**
+   * Convert source newline-delimited JSON (JSON Lines) file to new created CSV target file.
+   * Every line is converted by the same csvDefinition to the same CSV, header is written only once.
+   *
+   * @param source        source JSON Lines filename
    * @param csvDefinition definition of target CSV format
-   * @return root of JSON paths tree
+   * @throws IOException when some I/O problem occurred
    */
-  public JsonPath getJsonPathsTree(DocumentContext jsonContext, CsvDefinition csvDefinition) {
-    List<JsonPath> jsonPaths = new ArrayList<>();
+  public void convertJsonLines(String source, CsvDefinition csvDefinition) throws IOException {
+    convertJsonLines(new File(source), new ConversionPlan(csvDefinition));
+  }
 
-    JsonPath root = new JsonPath(JsonPathType.ROOT, jsonPaths);
+  /**
+   * Convert source newline-delimited JSON (JSON Lines) file to new created CSV target file.
+   * Every line is converted by the same plan to the same CSV, header is written only once.
+   *
+   * @param source source JSON Lines filename
+   * @param plan   compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convertJsonLines(String source, ConversionPlan plan) throws IOException {
+    convertJsonLines(new File(source), plan);
+  }
+
+  /**
+   * Convert source newline-delimited JSON (JSON Lines) file to new created CSV target file.
+   * Every line is converted by the same csvDefinition to the same CSV, header is written only once.
+   *
+   * @param source        source JSON Lines file
+   * @param csvDefinition definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convertJsonLines(File source, CsvDefinition csvDefinition) throws IOException {
+    convertJsonLines(source, new ConversionPlan(csvDefinition));
+  }
 
-    for (Field field : csvDefinition.getFields()) {
-      // Note that more than one json paths can be added during one cycle
-      parseJsonPathField(field.getJsonPath(), field.getJsonPath(), root, jsonContext);
+  /**
+   * Convert source newline-delimited JSON (JSON Lines) file to new created CSV target file.
+   * Every line is converted by the same plan to the same CSV, header is written only once.
+   *
+   * @param source source JSON Lines file
+   * @param plan   compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convertJsonLines(File source, ConversionPlan plan) throws IOException {
+    try (InputStream input = new FileInputStream(source)) {
+      convertJsonLines(input, plan);
     }
+  }
 
-    return root;
+  /**
+   * Convert source newline-delimited JSON (JSON Lines) stream to new created CSV target file.
+   * Every line is converted by the same csvDefinition to the same CSV, header is written only once
+   * (see {@link #convertJsonLines(InputStream, ConversionPlan)}).
+   *
+   * @param source        source JSON Lines stream
+   * @param csvDefinition definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convertJsonLines(InputStream source, CsvDefinition csvDefinition) throws IOException {
+    convertJsonLines(source, new ConversionPlan(csvDefinition));
   }
 
   /**
-   * Parses JSON path.
-   *
-   * <ol>
-   *   <li>
-   *    If modifiedJsonPath doesn't contain {@link JsonPath#ARRAY_IDENTIFIER_WITH_BRACKETS},
-   *    then adds new PROPERTY json path to the tree.
-   *   </li>
-   *   <li>
-   *     If modifiedJsonPath contains more than one {@link JsonPath#ARRAY_IDENTIFIER_WITH_BRACKETS},
-   *     then checks the size of the least nested array and calls the method recursively with
-   *     filled index to modifiedJsonPath
-   *     (array index instead of '*', e.g. organizations[*].users[*].id -> organizations[0].users[*].id)
-   *   </li>
-   *   <li>
-   *     If modifiedJsonPath contains exactly one {@link JsonPath#ARRAY_IDENTIFIER_WITH_BRACKETS},
-   *     then adds new ARRAY json path to the tree (if not yer exists there) with array indexes for its parent path
-   *     (e.g. for organizations[0].users[1].emails[*].address saves organizations[0].users[1].emails
-   *     with indexes [0, 1] -> size of 'emails' array)
-   *   </li>
-   * </ol>
-   *
-   * @param originalJsonPath original json path (e.g. organizations[*].users[*].id)
-   * @param modifiedJsonPath originalJsonPath with some filled array indexes
-   *                         (e.g. organizations[0].users[*].id or organizations[0].users[0].id)
-   * @param root             root of json paths tree (tree contains all parsed json paths)
-   * @param context          JSON context
-   */
-  private void parseJsonPathField(final String originalJsonPath, String modifiedJsonPath, JsonPath root,
-                                  DocumentContext context) {
-    int nestedArraysNumber = JsonPath.countNestedArrays(modifiedJsonPath);
-
-    if (nestedArraysNumber == 0) {
-      root.addNewDescendantJsonPath(originalJsonPath, JsonPathType.PROPERTY);
-    } else {
-      log.trace("jsonPath {} contains array, check how many items the array contains", modifiedJsonPath);
-      String modifiedArrayPathString = StringUtils.substringBefore(modifiedJsonPath, JsonPath.ARRAY_IDENTIFIER_WITH_BRACKETS);
-      int arraySize = JsonUtils.getArraySize(modifiedArrayPathString, context);
-
-      if (nestedArraysNumber == 1) {
-        log.trace("JSON path {} contains exactly one array -> add array indexes for the JSON path.",
-                modifiedJsonPath);
-
-        // if parent path already exists in tree, then returns existing
-        JsonPath parentPath = root.addNewDescendantJsonPath(JsonPath.getParentJsonPathString(originalJsonPath), JsonPathType.ARRAY);
-        parentPath.getArrayIndexes().put(JsonPath.findJsonPathIndexes(modifiedJsonPath), arraySize);
+   * Convert source newline-delimited JSON (JSON Lines) stream to new created CSV target file.
+   * Every line is converted by the same plan to the same CSV, header is written only once.
+   * <p>
+   * Lines are split the same way with and without streaming - every JSON document has to end its line, another
+   * document on the same line is rejected by {@link com.jayway.jsonpath.InvalidJsonException}.
+   *
+   * @param source source JSON Lines stream
+   * @param plan   compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convertJsonLines(InputStream source, ConversionPlan plan) throws IOException {
+    CsvDefinition csvDefinition = plan.getCsvDefinition();
+    ensureTargetDirectoryExists(csvDefinition);
+
+    log.debug("Converting JSON lines to CSV file {}.", csvDefinition.getName());
+    long lines = 0;
+    try (CsvRowWriter writer = CsvUtils.openRowWriter(csvDefinition)) {
+      writer.writeHeader();
+      JsonStreamReader jsonReader = new JsonStreamReader(new InputStreamReader(source, StandardCharsets.UTF_8));
+
+      if (plan.isStreamable()) {
+        StreamingConverter converter = new StreamingConverter(plan, writer);
+        while (converter.convertNext(jsonReader)) {
+          jsonReader.endLine();
+          lines++;
+        }
+      } else {
+        log.debug("CSV definition {} can't be converted by streaming, each line is loaded.", csvDefinition.getName());
+        while (jsonReader.peek() != JsonValueType.END) {
+          writeRows(JsonUtils.parseJson(jsonReader.nextRawValue()), plan, writer);
+          jsonReader.endLine();
+          lines++;
+        }
       }
+    }
+    log.info("CSV file {} was successfully created from {} JSON lines.", csvDefinition.getName(), lines);
+  }
 
-      // Iterate array
-      if (arraySize == 0) {
-        log.trace("Array {} is empty, set one value to iterate each subarray-items at least 1x.",
-                modifiedArrayPathString);
-        arraySize = 1;
-      }
-      for (int i = 0; i < arraySize; i++) {
-        log.trace("Call recursive method for each items from the array to get value with replaced array index.");
-        String iterateJsonPath = modifiedJsonPath.replaceFirst(JsonPath.ESCAPED_ARRAY_IDENTIFIER, i + "");
-        parseJsonPathField(originalJsonPath, iterateJsonPath, root, context);
-      }
+  /**
+   * Convert source newline-delimited JSON (JSON Lines) file to new created CSV target file on more threads
+   * (see {@link ParallelJsonLinesConverter}).
+   *
+   * @param source        source JSON Lines filename
+   * @param csvDefinition definition of target CSV format
+   * @param options       options of parallel conversion
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convertJsonLines(String source, CsvDefinition csvDefinition, ParallelConversionOptions options)
+      throws IOException {
+    convertJsonLines(new File(source), new ConversionPlan(csvDefinition), options);
+  }
+
+  /**
+   * Convert source newline-delimited JSON (JSON Lines) file to new created CSV target file on more threads
+   * (see {@link ParallelJsonLinesConverter}).
+   *
+   * @param source  source JSON Lines filename
+   * @param plan    compiled definition of target CSV format
+   * @param options options of parallel conversion
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convertJsonLines(String source, ConversionPlan plan, ParallelConversionOptions options)
+      throws IOException {
+    convertJsonLines(new File(source), plan, options);
+  }
+
+  /**
+   * Convert source newline-delimited JSON (JSON Lines) file to new created CSV target file on more threads
+   * (see {@link ParallelJsonLinesConverter}).
+   *
+   * @param source        source JSON Lines file
+   * @param csvDefinition definition of target CSV format
+   * @param options       options of parallel conversion
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convertJsonLines(File source, CsvDefinition csvDefinition, ParallelConversionOptions options)
+      throws IOException {
+    convertJsonLines(source, new ConversionPlan(csvDefinition), options);
+  }
+
+  /**
+   * Convert source newline-delimited JSON (JSON Lines) file to new created CSV target file on more threads
+   * (see {@link ParallelJsonLinesConverter}).
+   *
+   * @param source  source JSON Lines file
+   * @param plan    compiled definition of target CSV format
+   * @param options options of parallel conversion
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convertJsonLines(File source, ConversionPlan plan, ParallelConversionOptions options)
+      throws IOException {
+    try (InputStream input = new FileInputStream(source)) {
+      convertJsonLines(input, plan, options);
     }
   }
 
   /**
-   * Generate CSV file rows
-   * <ol>
-   *   <li>
-   *     If JSON path contains children, get number of array indexes and create one row for each object in array
-   *   </li>
-   *   <li>
-   *     If JSON path doesn't contain children, save JSON path with defined array indexes (or without indexes if JSON path doesn't contain array)
-   *     as CSV cell to current CSV row
-   *   </li>
-   *   <li>
-   *     When current CSV row is complete -> write row with real values.
-   *   </li>
-   * </ol>
+   * Convert source newline-delimited JSON (JSON Lines) stream to new created CSV target file on more threads.
+   * Every line has to contain one whole JSON document. Lines are converted in chunks by worker threads,
+   * with ordered options the rows are written in the same order as by {@link #convertJsonLines(InputStream, CsvDefinition)}.
    * <p>
-   * For leaf (PROPERTY type) json paths, that don't have any ARRAY parents, CSV cells will be permanently added to current row.
-   * Other cells will be added to different row objects created during recursion.
+   * Mappers of fields are called concurrently, so they have to be thread-safe. When csvDefinition can't be converted
+   * by streaming, lines are converted sequentially by the calling thread (a warning is logged).
    *
+   * @param source        source JSON Lines stream
    * @param csvDefinition definition of target CSV format
-   * @param path          processed json path
-   * @param row           CSV row
-   * @param indexes       current indexes of json path
-   * @param jsonContext   source JSON context
+   * @param options       options of parallel conversion
    * @throws IOException when some I/O problem occurred
    */
-  private void generateRow(CsvDefinition csvDefinition, JsonPath path, List<CsvCell> row,
-                           List<Integer> indexes, final DocumentContext jsonContext) throws IOException {
-    if (path.getChildren().isEmpty()) {
-      log.trace("Create cell with JSON path {} and array indexes {}.", path.getPath(), indexes);
+  public void convertJsonLines(InputStream source, CsvDefinition csvDefinition, ParallelConversionOptions options)
+      throws IOException {
+    convertJsonLines(source, new ConversionPlan(csvDefinition), options);
+  }
 
-      Field currentField = csvDefinition.getFieldByJsonPath(path.getPath());
-      row.add(new CsvCell(path.getPath(), indexes, currentField));
+  /**
+   * Convert source newline-delimited JSON (JSON Lines) stream to new created CSV target file on more threads.
+   * Every line has to contain one whole JSON document. Lines are converted in chunks by worker threads,
+   * with ordered options the rows are written in the same order as by {@link #convertJsonLines(InputStream, ConversionPlan)}.
+   * <p>
+   * Mappers of fields are called concurrently, so they have to be thread-safe. When plan isn't streamable,
+   * lines are converted sequentially by the calling thread (a warning is logged).
+   *
+   * @param source  source JSON Lines stream
+   * @param plan    compiled definition of target CSV format
+   * @param options options of parallel conversion
+   * @throws IOException when some I/O problem occurred
+   */
+  public void convertJsonLines(InputStream source, ConversionPlan plan, ParallelConversionOptions options)
+      throws IOException {
+    CsvDefinition csvDefinition = plan.getCsvDefinition();
+    if (!plan.isStreamable()) {
+      log.warn("CSV definition {} can't be converted by streaming, lines are converted sequentially on one thread.",
+          csvDefinition.getName());
+      convertJsonLines(source, plan);
+      return;
+    }
+    ensureTargetDirectoryExists(csvDefinition);
+
+    log.debug("Converting JSON lines to CSV file {} on {} threads.", csvDefinition.getName(), options.getThreads());
+    long lines;
+    try (CsvRowWriter writer = CsvUtils.openRowWriter(csvDefinition)) {
+      writer.writeHeader();
+      lines = new ParallelJsonLinesConverter(plan, options)
+          .convert(new InputStreamReader(source, StandardCharsets.UTF_8), writer);
+    }
+    log.info("CSV file {} was successfully created from {} JSON lines.", csvDefinition.getName(), lines);
+  }
 
-      if (row.size() == csvDefinition.getFields().size()) {
-        writeFoundRow(row, csvDefinition, jsonContext);
-      }
-    } else {
-      Integer arraySize = path.getArrayIndexes().get(indexes);
+  /**
+   * Converts source JSON file to lazily evaluated stream of CSV rows (values of fields without header).
+   * The JSON is loaded when the stream is created, but every row is generated only when it is consumed,
+   * so the stream can be stopped early or passed to any other sink. Rows without some required value are skipped.
+   *
+   * @param source        source JSON filename
+   * @param csvDefinition definition of target CSV format, its output isn't used
+   * @return stream of CSV rows
+   * @throws IOException when some I/O problem occurred
+   */
+  public Stream<List<String>> streamRows(String source, CsvDefinition csvDefinition) throws IOException {
+    return streamRows(source, new ConversionPlan(csvDefinition));
+  }
 
-      if (arraySize == 0) {
-        log.trace("Array for {} is empty, set one value to iterate the items at least 1x.", path.getPath());
-        arraySize = 1;
-      }
+  /**
+   * Converts source JSON file to lazily evaluated stream of CSV rows (see {@link #streamRows(String, CsvDefinition)}).
+   *
+   * @param source source JSON filename
+   * @param plan   compiled definition of target CSV format, its output isn't used
+   * @return stream of CSV rows
+   * @throws IOException when some I/O problem occurred
+   */
+  public Stream<List<String>> streamRows(String source, ConversionPlan plan) throws IOException {
+    return streamRows(JsonUtils.parseJsonFile(source), plan);
+  }
 
-      for (int i = 0; i < arraySize; i++) {
-        log.trace("Duplicating list the original collection is not modified and left intact.");
+  /**
+   * Converts source JSON file to lazily evaluated stream of CSV rows (see {@link #streamRows(String, CsvDefinition)}).
+   *
+   * @param source        source JSON file
+   * @param csvDefinition definition of target CSV format, its output isn't used
+   * @return stream of CSV rows
+   * @throws IOException when some I/O problem occurred
+   */
+  public Stream<List<String>> streamRows(File source, CsvDefinition csvDefinition) throws IOException {
+    return streamRows(source, new ConversionPlan(csvDefinition));
+  }
 
-        List<Integer> newIndexes = ListUtils.extendedList(indexes, i);
-        List<CsvCell> newRow = new ArrayList<>(row);
+  /**
+   * Converts source JSON file to lazily evaluated stream of CSV rows (see {@link #streamRows(String, CsvDefinition)}).
+   *
+   * @param source source JSON file
+   * @param plan   compiled definition of target CSV format, its output isn't used
+   * @return stream of CSV rows
+   * @throws IOException when some I/O problem occurred
+   */
+  public Stream<List<String>> streamRows(File source, ConversionPlan plan) throws IOException {
+    return streamRows(JsonUtils.parseJsonFile(source), plan);
+  }
+
+  /**
+   * Converts source JSON stream to lazily evaluated stream of CSV rows (see {@link #streamRows(String, CsvDefinition)}).
+   * The whole JSON document is read from source when the stream is created.
+   *
+   * @param source        source JSON stream
+   * @param csvDefinition definition of target CSV format, its output isn't used
+   * @return stream of CSV rows
+   * @throws IOException when some I/O problem occurred
+   */
+  public Stream<List<String>> streamRows(InputStream source, CsvDefinition csvDefinition) throws IOException {
+    return streamRows(source, new ConversionPlan(csvDefinition));
+  }
+
+  /**
+   * Converts source JSON stream to lazily evaluated stream of CSV rows (see {@link #streamRows(String, CsvDefinition)}).
+   * The whole JSON document is read from source when the stream is created.
+   *
+   * @param source source JSON stream
+   * @param plan   compiled definition of target CSV format, its output isn't used
+   * @return stream of CSV rows
+   * @throws IOException when some I/O problem occurred
+   */
+  public Stream<List<String>> streamRows(InputStream source, ConversionPlan plan) throws IOException {
+    return streamRows(JsonUtils.parseJsonFile(source), plan);
+  }
+
+  /**
+   * Creates lazy iterator of CSV rows of loaded JSON (see {@link RowIterator}).
+   *
+   * @param jsonContext source JSON context
+   * @param plan        compiled definition of target CSV format
+   * @return iterator of CSV rows, rows without some required value are skipped
+   */
+  public RowIterator iterateRows(DocumentContext jsonContext, ConversionPlan plan) {
+    return new RowIterator(jsonContext, plan);
+  }
 
-        for (JsonPath childPath : path.getChildren()) {
-          generateRow(csvDefinition, childPath, newRow, newIndexes, jsonContext);
+  private Stream<List<String>> streamRows(DocumentContext jsonContext, ConversionPlan plan) {
+    Spliterator<List<String>> rows = Spliterators.spliteratorUnknownSize(iterateRows(jsonContext, plan),
+        Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(rows, false);
+  }
+
+  /**
+   * Converts loaded JSON by all definitions. Definitions are converted by the calling thread if threads is 1,
+   * otherwise by a pool of threads. All conversions are finished before the first failure is thrown.
+   */
+  private void convert(DocumentContext jsonContext, Collection<CsvDefinition> csvDefinitions, int threads)
+      throws IOException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads has to be positive: " + threads);
+    }
+    if (threads == 1 || csvDefinitions.size() < 2) {
+      for (CsvDefinition csvDefinition : csvDefinitions) {
+        convert(jsonContext, new ConversionPlan(csvDefinition));
+      }
+      return;
+    }
+    log.debug("Converting JSON to {} CSV files on {} threads.", csvDefinitions.size(), threads);
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, csvDefinitions.size()),
+        ThreadUtils.createThreadFactory("definition"));
+    try {
+      List<Future<Void>> conversions = new ArrayList<>();
+      for (CsvDefinition csvDefinition : csvDefinitions) {
+        conversions.add(executor.submit(() -> {
+          convert(jsonContext, new ConversionPlan(csvDefinition));
+          return null;
+        }));
+      }
+      Exception failure = null;
+      for (Future<Void> conversion : conversions) {
+        try {
+          ThreadUtils.getResult(conversion);
+        } catch (IOException | RuntimeException e) {
+          if (failure == null) {
+            failure = e;
+          } else {
+            failure.addSuppressed(e);
+          }
         }
       }
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      } else if (failure != null) {
+        throw (RuntimeException) failure;
+      }
+    } finally {
+      executor.shutdownNow();
     }
   }
 
+  private void ensureTargetDirectoryExists(CsvDefinition csvDefinition) throws IOException {
+    if (csvDefinition instanceof FileCsvDefinition) {
+      String targetDirectory = Paths.get(((FileCsvDefinition) csvDefinition).getFileName()).getParent().toString();
+      FileUtils.ensureTargetDirectoryExists(targetDirectory);
+    }
+  }
 
   /**
-   * Writes CSV row with real values from JSON.
+   * Converts part of JSON to specified CSV file.
    *
-   * @param row list of cells, defining where value should be found in JSON
-   * @param csvDefinition definition of target CSV format
    * @param jsonContext source JSON context
-   * @throws IOException when some problem during writing to CSV file occurred
+   * @param plan        compiled definition of target CSV format
+   * @throws IOException when some I/O problem occurred
    */
-  private void writeFoundRow(List<CsvCell> row, CsvDefinition csvDefinition, DocumentContext jsonContext) throws IOException {
-    log.trace("CSV row ({}) is complete -> generate CSV row with real values from JSON file.",
-            csvDefinition.getName());
-    List<String> values = obtainRowValuesFromJson(row, jsonContext);
-    CsvUtils.writeCsvRow(csvDefinition, values);
+  private void convertJsonToCsv(DocumentContext jsonContext, ConversionPlan plan)
+          throws IOException {
+    CsvDefinition csvDefinition = plan.getCsvDefinition();
+    log.debug("Generating CSV file {}.", csvDefinition.getName());
+    try (CsvRowWriter writer = CsvUtils.openRowWriter(csvDefinition)) {
+      writer.writeHeader();
+      writeRows(jsonContext, plan, writer);
+    }
+    log.info("CSV file {} was successfully created.", csvDefinition.getName());
   }
 
   /**
-   * Obtains values for concrete CSV row from JSON.
+   * Converts part of JSON to CSV rows.
    *
-   * @param row     defines where the values for each cell should be searched in JSON
-   * @param context source JSON context
-   * @return values for concrete CSV row from JSON. Returns empty list, when row should be ignored
-   * (if some required cell value doesn't exist)
+   * @param jsonContext source JSON context
+   * @param plan        compiled definition of target CSV format
+   * @param writer      writer of target CSV
+   * @throws IOException when some I/O problem occurred
    */
-  private List<String> obtainRowValuesFromJson(List<CsvCell> row, final DocumentContext context) {
-    List<String> values = new ArrayList<>();
-
-    for (CsvCell cell : row) {
-      if (cell.jsonPathIsEmpty()) {
-        continue;
+  private void writeRows(DocumentContext jsonContext, ConversionPlan plan, CsvRowWriter writer)
+          throws IOException {
+    log.debug("Converting JSON file to CSV file {}.", plan.getCsvDefinition().getName());
+    List<String> values = new ArrayList<>(plan.getFieldCount());
+    if (plan.isFlat()) {
+      log.trace("CSV file {} doesn't contain any array, extract the only row.", plan.getCsvDefinition().getName());
+      if (new FlatRowExtractor(plan).extractRow(jsonContext, values)) {
+        writer.writeRow(values);
       }
-      String jsonPathWithFilledIndexes = cell.getJsonPathWithFilledIndexes();
+      return;
+    }
+    RowIterator rows = iterateRows(jsonContext, plan);
 
-      String propertyValue = getPropertyValue(jsonPathWithFilledIndexes, context);
-      List<String> convertedValues = null;
-      if (cell.getCurrentField().getCustomMapper() != null) {
-        convertedValues = cell.getCurrentField().getCustomMapper().apply(cell.getCurrentField(), propertyValue);
-      }
-      if (propertyValue == null && (convertedValues == null || convertedValues.size() == 0)) {
-        if (cell.getCurrentField().isRequired()) {
-          log.debug("For the property '{}' doesn't exist any value, skip the whole line.", jsonPathWithFilledIndexes);
-          return Collections.emptyList();
-        }
-        propertyValue = StringUtils.EMPTY;
-      }
-      if (convertedValues != null && convertedValues.size() > 0) {
-        values.addAll(convertedValues);
-      } else {
-        values.add(propertyValue);
-      }
+    log.trace("Start generating CSV file {} rows.", plan.getCsvDefinition().getName());
+    while (rows.nextRow(values)) {
+      writer.writeRow(values);
     }
+  }
+
+  /**
+   * Constructs tree of JSON paths, that should be converted according to TableData.
+   *
+   * @param jsonContext   loaded JSON context
+   * @param csvDefinition definition of target CSV format
+   * @return root of JSON paths tree
+   */
+  public JsonPath getJsonPathsTree(DocumentContext jsonContext, CsvDefinition csvDefinition) {
+    return getJsonPathsTree(jsonContext, new ConversionPlan(csvDefinition));
+  }
 
-    return values;
+  /**
+   * Constructs tree of JSON paths, that should be converted according to compiled plan.
+   * Paths of the tree are taken from the plan, only sizes of arrays are found in JSON.
+   * <p>
+   * The tree isn't needed for conversion (sizes of arrays are resolved while rows are generated),
+   * it describes structure of the JSON for the definition.
+   *
+   * @param jsonContext loaded JSON context
+   * @param plan        compiled definition of target CSV format
+   * @return root of JSON paths tree
+   */
+  public JsonPath getJsonPathsTree(DocumentContext jsonContext, ConversionPlan plan) {
+    JsonPath root = plan.createPathsTree();
+    Object[] items = new Object[plan.getMaxNestedArrays() + 1];
+    items[0] = jsonContext.json();
+    findArraySizes(plan, root, new int[plan.getMaxNestedArrays()], 0, items, jsonContext);
+    return root;
   }
 
   /**
-   * Gets value of property defined by path from JSON context.
+   * Finds sizes of arrays of ARRAY children of path and saves them with indexes of their parent arrays
+   * (e.g. for organizations[0].users[1].emails saves organizations[*].users[*].emails with indexes [0, 1]
+   * -> size of 'emails' array). Then calls itself recursively for each item of each array (at least once for
+   * an empty array).
    *
-   * @param jsonPath path of property, which value will be returned
-   * @param context  JSON context
-   * @return value of property defined by path from JSON context. Returns null if path doesn't exist
+   * @param plan    compiled definition of target CSV format
+   * @param path    processed json path
+   * @param indexes current indexes of json path
+   * @param depth   number of filled indexes
+   * @param items   current items of arrays by the number of nested arrays (0 is the whole JSON)
+   * @param context JSON context
    */
-  private String getPropertyValue(String jsonPath, DocumentContext context) {
-    try {
-      return context.read(jsonPath).toString();
-    } catch (PathNotFoundException | NullPointerException e) {
-      log.trace(String.format("There is no value for JSON path %s.", jsonPath));
-      return null;
+  private void findArraySizes(ConversionPlan plan, JsonPath path, int[] indexes, int depth, Object[] items,
+                              DocumentContext context) {
+    for (JsonPath child : path.getChildren()) {
+      if (child.getChildren().isEmpty()) {
+        continue;
+      }
+      JsonPathTemplate template = plan.getArrayTemplate(child.getPath());
+      Object array = null;
+      int arraySize;
+      if (template.isNavigable() && depth == template.getSlotCount()) {
+        array = JsonUtils.getValue(items[depth], template.getSegments(),
+                template.getRelativeSegmentsStart(), template.getSegments().size(), null);
+        arraySize = JsonUtils.getSize(array);
+      } else {
+        arraySize = JsonUtils.getArraySize(template.fill(indexes, depth), context);
+      }
+      child.getArrayIndexes().put(indexes, depth, arraySize);
+
+      for (int i = 0; i < Math.max(arraySize, 1); i++) {
+        indexes[depth] = i;
+        items[depth + 1] = JsonUtils.getItem(array, i);
+        findArraySizes(plan, child, indexes, depth + 1, items, context);
+      }
     }
   }
 }
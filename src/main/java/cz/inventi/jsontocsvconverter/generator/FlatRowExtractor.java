@@ -0,0 +1,95 @@
+package cz.inventi.jsontocsvconverter.generator;
+
+import com.jayway.jsonpath.DocumentContext;
+import cz.inventi.jsontocsvconverter.mapper.ListSink;
+import cz.inventi.jsontocsvconverter.model.ConversionPlan;
+import cz.inventi.jsontocsvconverter.model.JsonPathTemplate;
+import cz.inventi.jsontocsvconverter.utils.JsonUtils;
+import cz.inventi.jsontocsvconverter.utils.RowUtils;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the only CSV row of JSON for {@link ConversionPlan#isFlat() flat} plans.
+ * <p>
+ * Values of columns are read directly from the document, without JSON paths tree, cells or row cursor.
+ * Required columns are resolved first, so no other value is read if some required value doesn't exist. The result is the same as the result of {@link RowIterator} for the same plan.
+ */
+@Log4j2
+public class FlatRowExtractor {
+
+  private final ConversionPlan plan;
+  /**
+   * Values of required columns by position of the column
+   */
+  private final List<List<String>> requiredValues;
+  private final ListSink sink = new ListSink();
+
+  /**
+   * @param plan compiled definition of target CSV format without any array
+   * @throws IllegalArgumentException if the plan isn't flat
+   */
+  public FlatRowExtractor(ConversionPlan plan) {
+    if (!plan.isFlat()) {
+      throw new IllegalArgumentException("CSV definition " + plan.getCsvDefinition().getName() + " contains arrays.");
+    }
+    this.plan = plan;
+    this.requiredValues = new ArrayList<>(plan.getColumns().size());
+    for (int i = 0; i < plan.getColumns().size(); i++) {
+      requiredValues.add(new ArrayList<>());
+    }
+  }
+
+  /**
+   * Replaces content of values by values of the row of JSON.
+   *
+   * @param jsonContext source JSON context
+   * @param values      list for values of the row
+   * @return false if there is no row (some required value doesn't exist, the row is empty or JSON path
+   * is defined more than once)
+   */
+  public boolean extractRow(DocumentContext jsonContext, List<String> values) {
+    values.clear();
+    if (!plan.isProducingRows()) {
+      return false;
+    }
+    Object json = jsonContext.json();
+    List<ConversionPlan.Column> columns = plan.getColumns();
+    for (int i = 0; i < columns.size(); i++) {
+      ConversionPlan.Column column = columns.get(i);
+      if (!column.getFieldByJsonPath().isRequired()) {
+        continue;
+      }
+      List<String> columnValues = requiredValues.get(i);
+      columnValues.clear();
+      if (!RowUtils.addFieldValues(column.getFieldByJsonPath(), column.getMapper(),
+          getPropertyValue(column, json, jsonContext), sink.to(columnValues))) {
+        log.trace("Required value of {} doesn't exist, there is no row.", column.getJsonPath());
+        return false;
+      }
+    }
+    for (int i = 0; i < columns.size(); i++) {
+      ConversionPlan.Column column = columns.get(i);
+      if (column.getFieldByJsonPath().isRequired()) {
+        values.addAll(requiredValues.get(i));
+      } else {
+        RowUtils.addFieldValues(column.getFieldByJsonPath(), column.getMapper(),
+            getPropertyValue(column, json, jsonContext), sink.to(values));
+      }
+    }
+    return !values.isEmpty();
+  }
+
+  private Object getPropertyValue(ConversionPlan.Column column, Object json, DocumentContext jsonContext) {
+    JsonPathTemplate template = column.getJsonPathTemplate();
+    Object value = template.isNavigable()
+        ? JsonUtils.getValue(json, template.getSegments(), 0, template.getSegments().size(), null)
+        : JsonUtils.read(column.getJsonPath(), jsonContext);
+    if (value == null) {
+      log.trace("There is no value for JSON path {}.", column.getJsonPath());
+    }
+    return value;
+  }
+}
@@ -0,0 +1,351 @@
+package cz.inventi.jsontocsvconverter.generator;
+
+import com.jayway.jsonpath.DocumentContext;
+import cz.inventi.jsontocsvconverter.mapper.ListSink;
+import cz.inventi.jsontocsvconverter.model.ConversionPlan;
+import cz.inventi.jsontocsvconverter.model.JsonPath;
+import cz.inventi.jsontocsvconverter.model.JsonPathTemplate;
+import cz.inventi.jsontocsvconverter.model.csvdefinitions.DefaultCsvDefinition;
+import cz.inventi.jsontocsvconverter.utils.JsonUtils;
+import cz.inventi.jsontocsvconverter.utils.RowUtils;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy iterator of CSV rows generated from loaded JSON by JSON paths tree of {@link ConversionPlan}.
+ * <p>
+ * The tree is traversed depth-first by an explicit cursor - a stack of frames, one frame for every ARRAY json path
+ * between the root and the current node, each frame holding the index of the current array item.
+ * Frames, the stack of indexes and the row buffer (sized to the number of fields) are allocated once per iterator
+ * and reused for all rows.
+ * <ol>
+ *   <li>
+ *     If JSON path contains children, one frame is pushed and all its children are visited once for every item
+ *     of the array (at least once for an empty array).
+ *     The item of array is found in JSON only once and all its children are searched relatively to it.
+ *   </li>
+ *   <li>
+ *     If JSON path doesn't contain children, JSON path with defined array indexes (or without indexes if JSON path
+ *     doesn't contain array) is saved as CSV cell to the row buffer. Cells of the frame are dropped from the buffer
+ *     when the frame moves to the next item, so rows of parents are left intact
+ *   </li>
+ *   <li>
+ *     When the row is complete, the cursor stops and the row with real values is returned.
+ *   </li>
+ * </ol>
+ * Traversal is resumed only when the next row is requested, so no row is computed before it is pulled.
+ * Sizes of arrays are resolved when the cursor enters them, so the document isn't walked before the first row.
+ * Rows without some required value are skipped - values of required fields are resolved as soon as their cells
+ * are added, so a missing value skips all rows of the array item at once, before any nested array is entered.
+ * Rows without any value are skipped too, the same way as by {@link cz.inventi.jsontocsvconverter.writer.CsvRowWriter}.
+ */
+@Log4j2
+public class RowIterator implements Iterator<List<String>> {
+
+  private final ConversionPlan plan;
+  private final DocumentContext jsonContext;
+  /**
+   * Current items of arrays by the number of nested arrays (0 is the whole JSON),
+   * null if the item doesn't exist or it can't be found directly
+   */
+  private final Object[] items;
+  /**
+   * Current indexes of arrays by the number of nested arrays
+   */
+  private final int[] indexes;
+  /**
+   * Frames by the number of nested arrays (0 is the root of the tree)
+   */
+  private final Frame[] frames;
+  private int depth;
+  /**
+   * Columns of cells of the current row, null for {@link DefaultCsvDefinition#EMPTY_JSON_PATH}
+   */
+  private final ConversionPlan.Column[] rowColumns;
+  /**
+   * Number of indexes filled when the cell was added to the current row
+   */
+  private final int[] rowLevels;
+  /**
+   * Resolved values of cells of the current row (including output of custom mapper). Values of a cell are resolved
+   * once and reused for all rows, until the cell is dropped from the row buffer.
+   */
+  private final List<List<String>> cellValues;
+  private final boolean[] resolved;
+  /**
+   * Sink appending values of cells either to cellValues or directly to the row
+   */
+  private final ListSink sink = new ListSink();
+  private int rowLength;
+  private List<String> next;
+
+  /**
+   * @param jsonContext source JSON context
+   * @param plan        compiled definition of target CSV format
+   */
+  public RowIterator(DocumentContext jsonContext, ConversionPlan plan) {
+    this.plan = plan;
+    this.jsonContext = jsonContext;
+    this.items = new Object[plan.getMaxNestedArrays() + 1];
+    this.items[0] = jsonContext.json();
+    this.indexes = new int[plan.getMaxNestedArrays()];
+    this.frames = new Frame[plan.getMaxNestedArrays() + 1];
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = new Frame();
+    }
+    this.rowColumns = new ConversionPlan.Column[plan.getFieldCount()];
+    this.rowLevels = new int[plan.getFieldCount()];
+    this.cellValues = new ArrayList<>(plan.getFieldCount());
+    for (int i = 0; i < plan.getFieldCount(); i++) {
+      cellValues.add(new ArrayList<>());
+    }
+    this.resolved = new boolean[plan.getFieldCount()];
+    // Leaves without any ARRAY parents are permanently added to the row of the root frame
+    frames[0].enter(plan.getPathsTree(), null, 1, 0);
+    if (!plan.isRowCompletable()) {
+      log.debug("No row of CSV file {} can contain all fields.", plan.getCsvDefinition().getName());
+      depth = -1;
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      List<String> values = new ArrayList<>(plan.getFieldCount());
+      if (nextRow(values)) {
+        next = values;
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public List<String> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    List<String> row = next;
+    next = null;
+    return row;
+  }
+
+  /**
+   * Moves the cursor to the next complete and not empty row, which isn't skipped, and replaces content of values
+   * by values of the row. One list of values can be reused for all rows.
+   *
+   * @param values list for values of the row
+   * @return false if there is no other row
+   */
+  public boolean nextRow(List<String> values) {
+    values.clear();
+    if (next != null) {
+      values.addAll(next);
+      next = null;
+      return true;
+    }
+    while (depth >= 0) {
+      Frame frame = frames[depth];
+      if (frame.childPosition < frame.path.getChildren().size()) {
+        JsonPath child = frame.path.getChildren().get(frame.childPosition++);
+        if (!child.getChildren().isEmpty()) {
+          enterArray(child);
+          continue;
+        }
+        addCell(child);
+        if (!resolveRequiredCell(rowLength - 1)) {
+          log.trace("Required value of {} doesn't exist, skip all rows of the current item.", child.getPath());
+          frame.childPosition = frame.path.getChildren().size();
+        } else if (rowLength == plan.getFieldCount()) {
+          log.trace("CSV row ({}) is complete -> generate CSV row with real values from JSON file.",
+                  plan.getCsvDefinition().getName());
+          if (obtainRowValuesFromJson(values) && !values.isEmpty()) {
+            return true;
+          }
+          // rows without any value (only fields with empty JSON path) aren't written by CsvRowWriter either
+          values.clear();
+        }
+      } else if (frame.index + 1 < frame.arraySize) {
+        moveTo(frame, frame.index + 1);
+      } else {
+        rowLength = frame.rowStart;
+        depth--;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds cell of leaf JSON path to the row buffer.
+   */
+  private void addCell(JsonPath path) {
+    log.trace("Create cell with JSON path {} with {} array indexes.", path.getPath(), depth);
+
+    rowColumns[rowLength] = plan.getColumn(path.getPath());
+    rowLevels[rowLength] = depth;
+    resolved[rowLength] = false;
+    rowLength++;
+  }
+
+  /**
+   * Resolves values of the cell at position if its field is required. The cell is a part of every row generated
+   * from the current item of the current array, so if the value doesn't exist, none of these rows is generated
+   * and the rest of the item can be skipped at once.
+   *
+   * @param position position of the cell in the row buffer
+   * @return false if value of required field doesn't exist
+   */
+  private boolean resolveRequiredCell(int position) {
+    ConversionPlan.Column column = rowColumns[position];
+    if (column == null || !column.getFieldByJsonPath().isRequired()) {
+      return true;
+    }
+    return resolveCell(position);
+  }
+
+  /**
+   * Resolves values of the cell at position and keeps them for other rows containing the same cell.
+   *
+   * @param position position of the cell in the row buffer
+   * @return false if value of required field doesn't exist
+   */
+  private boolean resolveCell(int position) {
+    ConversionPlan.Column column = rowColumns[position];
+    List<String> values = cellValues.get(position);
+    values.clear();
+    Object propertyValue = getPropertyValue(column, rowLevels[position]);
+    resolved[position] = RowUtils.addFieldValues(column.getFieldByJsonPath(), column.getMapper(), propertyValue,
+            sink.to(values));
+    return resolved[position];
+  }
+
+  /**
+   * Enters ARRAY json path - the array is found in the current item of the parent array and its size
+   * is resolved just now, sizes of arrays aren't searched before generating rows.
+   */
+  private void enterArray(JsonPath path) {
+    JsonPathTemplate template = plan.getArrayTemplate(path.getPath());
+    Object array = null;
+    int arraySize;
+    if (template.isNavigable() && depth == template.getSlotCount()) {
+      array = JsonUtils.getValue(items[depth], template.getSegments(),
+              template.getRelativeSegmentsStart(), template.getSegments().size(), null);
+      arraySize = JsonUtils.getSize(array);
+    } else {
+      arraySize = JsonUtils.getArraySize(template.fill(indexes, depth), jsonContext);
+    }
+
+    if (arraySize == 0) {
+      log.trace("Array for {} is empty, set one value to iterate the items at least 1x.", path.getPath());
+      arraySize = 1;
+    }
+
+    Frame frame = frames[++depth];
+    frame.enter(path, array, arraySize, rowLength);
+    moveTo(frame, 0);
+  }
+
+  /**
+   * Starts visiting children of the array item with index, cells of the previous item are dropped.
+   */
+  private void moveTo(Frame frame, int index) {
+    frame.index = index;
+    frame.childPosition = 0;
+    rowLength = frame.rowStart;
+    indexes[depth - 1] = index;
+    items[depth] = JsonUtils.getItem(frame.array, index);
+  }
+
+  /**
+   * Obtains values for concrete CSV row from JSON. Values of cells from parent arrays (and from the root) are
+   * resolved only for the first row of the item of their array and reused for other rows, cells of the current
+   * item are part of this row only. Values of fields with not pure custom mapper are resolved for every row.
+   *
+   * @param values values of CSV row
+   * @return false when row should be ignored (if some required cell value doesn't exist)
+   */
+  private boolean obtainRowValuesFromJson(List<String> values) {
+    for (int i = 0; i < rowLength; i++) {
+      ConversionPlan.Column column = rowColumns[i];
+      if (column == null) {
+        continue;
+      }
+      boolean pure = column.getFieldByJsonPath().isCustomMapperPure();
+      if (resolved[i] && pure) {
+        values.addAll(cellValues.get(i));
+      } else if (rowLevels[i] == depth || !pure) {
+        Object propertyValue = getPropertyValue(column, rowLevels[i]);
+        if (!RowUtils.addFieldValues(column.getFieldByJsonPath(), column.getMapper(), propertyValue,
+                sink.to(values))) {
+          values.clear();
+          return false;
+        }
+      } else if (resolveCell(i)) {
+        values.addAll(cellValues.get(i));
+      } else {
+        values.clear();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets value of property of column from JSON context. If the path of column is navigable, value is found
+   * directly in parsed JSON relatively to the current item of its array, otherwise it is read by JSON path
+   * with filled indexes.
+   *
+   * @param column column of the cell
+   * @param level  number of indexes filled when the cell was added
+   * @return raw value of property of column. Returns null if path doesn't exist
+   */
+  private Object getPropertyValue(ConversionPlan.Column column, int level) {
+    JsonPathTemplate template = column.getJsonPathTemplate();
+    if (!template.isNavigable() || level != template.getSlotCount()) {
+      return getPropertyValue(template.fill(indexes, level));
+    }
+    return JsonUtils.getValue(items[level], template.getSegments(), template.getRelativeSegmentsStart(),
+            template.getSegments().size(), null);
+  }
+
+  /**
+   * Gets value of property defined by path from JSON context.
+   *
+   * @param jsonPath path of property, which value will be returned
+   * @return raw value of property defined by path from JSON context. Returns null if path doesn't exist
+   */
+  private Object getPropertyValue(String jsonPath) {
+    Object value = JsonUtils.read(jsonPath, jsonContext);
+    if (value == null) {
+      log.trace("There is no value for JSON path {}.", jsonPath);
+    }
+    return value;
+  }
+
+  /**
+   * Position of the cursor in one JSON path with children.
+   */
+  private static class Frame {
+    private JsonPath path;
+    private Object array;
+    private int arraySize;
+    private int index;
+    private int childPosition;
+    /**
+     * Length of the row buffer before the first cell of this frame
+     */
+    private int rowStart;
+
+    private void enter(JsonPath path, Object array, int arraySize, int rowStart) {
+      this.path = path;
+      this.array = array;
+      this.arraySize = arraySize;
+      this.rowStart = rowStart;
+      this.index = 0;
+      this.childPosition = 0;
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package cz.inventi.jsontocsvconverter.mapper;
+
+import java.util.List;
+
+/**
+ * Reusable {@link ValueSink} adding values to a list, which can be switched without creating a new sink.
+ */
+public class ListSink implements ValueSink {
+
+  private List<String> values;
+
+  /**
+   * @param values list for values added to this sink
+   * @return this sink
+   */
+  public ListSink to(List<String> values) {
+    this.values = values;
+    return this;
+  }
+
+  @Override
+  public void add(String value) {
+    values.add(value);
+  }
+
+  /**
+   * @return number of values in the current list
+   */
+  public int size() {
+    return values.size();
+  }
+}
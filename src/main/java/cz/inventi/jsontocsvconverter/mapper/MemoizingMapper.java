@@ -0,0 +1,125 @@
+package cz.inventi.jsontocsvconverter.mapper;
+
+import cz.inventi.jsontocsvconverter.model.Field;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Custom mapper remembering results of another (expensive) custom mapper for the least recently used values.
+ * <p>
+ * Memoization is opt-in - the mapper of a field is wrapped explicitly
+ * (e.g. {@code new CsvField("COUNTRY", "address.country", false, MemoizingMapper.of(this::countryName, 1000))}),
+ * so mappers, which aren't pure functions of the value, are simply not wrapped. One instance should be used for
+ * one field, because results are remembered by the value only. The mapper is thread-safe, but the remembered mapper
+ * is called outside of its lock, so it is called concurrently by parallel conversions and has to be thread-safe too.
+ */
+public class MemoizingMapper implements BiFunction<Field, String, List<String>> {
+
+  private final BiFunction<Field, String, List<String>> mapper;
+  private final int maxSize;
+  private final Map<String, List<String>> results;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * @param mapper  remembered custom mapper
+   * @param maxSize the maximal number of remembered results
+   */
+  public MemoizingMapper(BiFunction<Field, String, List<String>> mapper, int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Size of memoizing mapper has to be positive: " + maxSize);
+    }
+    this.mapper = mapper;
+    this.maxSize = maxSize;
+    this.results = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+        if (size() > MemoizingMapper.this.maxSize) {
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * @param mapper  remembered custom mapper
+   * @param maxSize the maximal number of remembered results
+   * @return new memoizing mapper
+   */
+  public static MemoizingMapper of(BiFunction<Field, String, List<String>> mapper, int maxSize) {
+    return new MemoizingMapper(mapper, maxSize);
+  }
+
+  /**
+   * Returns remembered result for value or applies the mapper and remembers its result.
+   * Results are read-only and null results are remembered too.
+   */
+  @Override
+  public List<String> apply(Field field, String value) {
+    synchronized (results) {
+      List<String> result = results.get(value);
+      if (result != null || results.containsKey(value)) {
+        hits++;
+        return result;
+      }
+      misses++;
+    }
+    List<String> result = mapper.apply(field, value);
+    List<String> remembered = result == null ? null : Collections.unmodifiableList(new ArrayList<>(result));
+    synchronized (results) {
+      results.put(value, remembered);
+    }
+    return remembered;
+  }
+
+  /**
+   * @return number of values, which result was remembered
+   */
+  public long getHits() {
+    synchronized (results) {
+      return hits;
+    }
+  }
+
+  /**
+   * @return number of values, which were passed to the mapper
+   */
+  public long getMisses() {
+    synchronized (results) {
+      return misses;
+    }
+  }
+
+  /**
+   * @return number of results, which were forgotten because of the maximal size
+   */
+  public long getEvictions() {
+    synchronized (results) {
+      return evictions;
+    }
+  }
+
+  /**
+   * @return number of currently remembered results
+   */
+  public int size() {
+    synchronized (results) {
+      return results.size();
+    }
+  }
+
+  /**
+   * @return the maximal number of remembered results
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+}
@@ -0,0 +1,41 @@
+package cz.inventi.jsontocsvconverter.mapper;
+
+import cz.inventi.jsontocsvconverter.model.Field;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Custom mapper appending values of CSV columns directly to the row, without creating a list for every cell.
+ * <p>
+ * Mapper receives the raw JSON value - {@link String}, {@link Number}, {@link Boolean}, {@link java.util.Map}
+ * for objects and {@link List} for arrays (null if the property doesn't exist), so one-to-one mappers don't even
+ * need its string representation. If the mapper doesn't add any value, the value itself is used (the same as
+ * for empty result of {@link Field#getCustomMapper()}). Mapper has to be thread-safe the same way as custom mapper,
+ * because parallel conversions call it from more threads.
+ */
+@FunctionalInterface
+public interface ValueMapper {
+
+  /**
+   * @param field definition of CSV field
+   * @param value raw value of the property from JSON, null if the property doesn't exist
+   * @param sink  values of CSV row
+   */
+  void map(Field field, Object value, ValueSink sink);
+
+  /**
+   * @param mapper custom mapper returning list of values
+   * @return value mapper adding values returned by mapper for string representation of the value
+   */
+  static ValueMapper of(BiFunction<Field, String, List<String>> mapper) {
+    return (field, value, sink) -> {
+      List<String> values = mapper.apply(field, value == null ? null : value.toString());
+      if (values != null) {
+        for (String mapped : values) {
+          sink.add(mapped);
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,14 @@
+package cz.inventi.jsontocsvconverter.mapper;
+
+/**
+ * Target of values of CSV columns produced by {@link ValueMapper}.
+ */
+@FunctionalInterface
+public interface ValueSink {
+  /**
+   * Appends value of the next column.
+   *
+   * @param value value of column
+   */
+  void add(String value);
+}
@@ -0,0 +1,201 @@
+package cz.inventi.jsontocsvconverter.model;
+
+import java.util.Arrays;
+
+/**
+ * Sizes of arrays of one ARRAY json path by indexes of its parent arrays
+ * (e.g. for 'organizations[*].users[*].emails', indexes [0, 1] -> 2 means that array organizations[0].users[1].emails
+ * has size 2).
+ * <p>
+ * Sizes are stored in a trie of primitive ints - every node has a block of child node ids addressed directly
+ * by array index, so neither indexes nor sizes are boxed and lookups don't allocate.
+ */
+public class ArraySizes {
+  /**
+   * Returned by {@link #get(int[], int)} for indexes without recorded size
+   */
+  public static final int ABSENT = -1;
+  private static final int ROOT = 0;
+  private static final int MIN_BLOCK_CAPACITY = 4;
+
+  /**
+   * Array size by node id, {@link #ABSENT} for inner nodes
+   */
+  private int[] values = new int[MIN_BLOCK_CAPACITY];
+  /**
+   * Start of the block of children in childIds by node id
+   */
+  private int[] childStarts = new int[MIN_BLOCK_CAPACITY];
+  /**
+   * Capacity of the block of children by node id
+   */
+  private int[] childCapacities = new int[MIN_BLOCK_CAPACITY];
+  private int nodeCount = 1;
+  /**
+   * Blocks of child node ids (0 if child doesn't exist, the root is never a child)
+   */
+  private int[] childIds = new int[0];
+  private int size;
+
+  public ArraySizes() {
+    values[ROOT] = ABSENT;
+  }
+
+  /**
+   * Saves size of array.
+   *
+   * @param indexes indexes of parent arrays
+   * @param count   number of indexes
+   * @param size    size of array
+   */
+  public void put(int[] indexes, int count, int size) {
+    int node = ROOT;
+    for (int i = 0; i < count; i++) {
+      node = getOrCreateChild(node, indexes[i]);
+    }
+    if (values[node] == ABSENT) {
+      this.size++;
+    }
+    values[node] = size;
+  }
+
+  /**
+   * @param indexes indexes of parent arrays
+   * @param count   number of indexes
+   * @return size of array, {@link #ABSENT} if the size wasn't saved
+   */
+  public int get(int[] indexes, int count) {
+    int node = ROOT;
+    for (int i = 0; i < count && node != ABSENT; i++) {
+      node = getChild(node, indexes[i]);
+    }
+    return node == ABSENT ? ABSENT : values[node];
+  }
+
+  /**
+   * @return number of saved array sizes
+   */
+  public int size() {
+    return size;
+  }
+
+  private int getChild(int node, int index) {
+    if (index < 0 || index >= childCapacities[node]) {
+      return ABSENT;
+    }
+    int child = childIds[childStarts[node] + index];
+    return child == ROOT ? ABSENT : child;
+  }
+
+  private int getOrCreateChild(int node, int index) {
+    if (index < 0) {
+      throw new IllegalArgumentException("Array index can't be negative: " + index);
+    }
+    if (index >= childCapacities[node]) {
+      growBlock(node, index);
+    }
+    int slot = childStarts[node] + index;
+    if (childIds[slot] == ROOT) {
+      childIds[slot] = createNode();
+    }
+    return childIds[slot];
+  }
+
+  /**
+   * Moves block of children of node to the end of childIds with capacity for index.
+   */
+  private void growBlock(int node, int index) {
+    int capacity = Math.max(Math.max(index + 1, 2 * childCapacities[node]), MIN_BLOCK_CAPACITY);
+    int start = childIds.length;
+    childIds = Arrays.copyOf(childIds, start + capacity);
+    System.arraycopy(childIds, childStarts[node], childIds, start, childCapacities[node]);
+    childStarts[node] = start;
+    childCapacities[node] = capacity;
+  }
+
+  private int createNode() {
+    if (nodeCount == values.length) {
+      int capacity = 2 * nodeCount;
+      values = Arrays.copyOf(values, capacity);
+      childStarts = Arrays.copyOf(childStarts, capacity);
+      childCapacities = Arrays.copyOf(childCapacities, capacity);
+    }
+    values[nodeCount] = ABSENT;
+    return nodeCount++;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ArraySizes)) {
+      return false;
+    }
+    ArraySizes other = (ArraySizes) o;
+    return size == other.size && equalNodes(ROOT, other, ROOT);
+  }
+
+  private boolean equalNodes(int node, ArraySizes other, int otherNode) {
+    if (values[node] != other.values[otherNode]) {
+      return false;
+    }
+    int capacity = Math.max(childCapacities[node], other.childCapacities[otherNode]);
+    for (int index = 0; index < capacity; index++) {
+      int child = getChild(node, index);
+      int otherChild = other.getChild(otherNode, index);
+      if (child == ABSENT || otherChild == ABSENT) {
+        if (child != otherChild) {
+          return false;
+        }
+      } else if (!equalNodes(child, other, otherChild)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return hashNode(ROOT);
+  }
+
+  private int hashNode(int node) {
+    int hash = values[node];
+    for (int index = 0; index < childCapacities[node]; index++) {
+      int child = getChild(node, index);
+      if (child != ABSENT) {
+        hash = 31 * hash + index;
+        hash = 31 * hash + hashNode(child);
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * @return saved sizes in format {[indexes]=size, ...} (e.g. {[0, 0]=2, [0, 1]=0})
+   */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder("{");
+    appendNode(result, ROOT, new int[0]);
+    if (result.length() > 1) {
+      result.setLength(result.length() - 2);
+    }
+    return result.append('}').toString();
+  }
+
+  private void appendNode(StringBuilder result, int node, int[] indexes) {
+    if (values[node] != ABSENT) {
+      result.append(Arrays.toString(indexes)).append('=').append(values[node]).append(", ");
+    }
+    for (int index = 0; index < childCapacities[node]; index++) {
+      int child = getChild(node, index);
+      if (child != ABSENT) {
+        int[] childIndexes = Arrays.copyOf(indexes, indexes.length + 1);
+        childIndexes[indexes.length] = index;
+        appendNode(result, child, childIndexes);
+      }
+    }
+  }
+}
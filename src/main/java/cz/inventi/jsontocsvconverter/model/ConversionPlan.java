@@ -0,0 +1,595 @@
+package cz.inventi.jsontocsvconverter.model;
+
+import cz.inventi.jsontocsvconverter.mapper.ValueMapper;
+import cz.inventi.jsontocsvconverter.model.csvdefinitions.DefaultCsvDefinition;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * {@link CsvDefinition} compiled for conversion.
+ * <p>
+ * All information derived from the fields (parsed paths, nesting of arrays, skeleton of JSON paths tree,
+ * column positions and required flags) is computed once when the plan is created. The plan is immutable,
+ * so one plan can be used for any number of conversions, also concurrently from more threads.
+ * <p>
+ * The output of the plan (target file or stream, encoding, delimiters etc.) is taken from its definition,
+ * so all conversions by one plan write to the same target. The compiled information doesn't depend on the output,
+ * {@link #withOutput(CsvDefinition)} creates a plan sharing it with another definition of the same fields.
+ * <p>
+ * Fields are split to levels by the number of {@link JsonPath#ARRAY_IDENTIFIER_WITH_BRACKETS} in their paths
+ * (level 0 is the document, level 1 is the item of the least nested array etc.).
+ * Each level contains tree of {@link MatchNode}s with paths relative to the item of its array.
+ */
+@Log4j2
+@Getter
+public class ConversionPlan {
+  /**
+   * Definition of target CSV format, its fields are compiled by this plan and its output is the target of conversions
+   */
+  private final CsvDefinition csvDefinition;
+  /**
+   * Number of all fields (including fields with {@link DefaultCsvDefinition#EMPTY_JSON_PATH})
+   */
+  private final int fieldCount;
+  /**
+   * All paths can be processed by streaming conversion
+   */
+  private final boolean streamable;
+  /**
+   * Fields are hierarchical combination of paths, so some rows can be generated
+   */
+  private final boolean producingRows;
+  /**
+   * Some row of JSON paths tree can contain cells of all fields, otherwise conversion by the tree gives no row
+   */
+  private final boolean rowCompletable;
+  /**
+   * Columns of fields with not empty JSON path, in order of fields
+   */
+  private final List<Column> columns;
+  /**
+   * Levels of nested arrays, filled only for streamable plan
+   */
+  private final List<Level> levels;
+  /**
+   * Skeleton of JSON paths tree (without array sizes), the same for all documents, it can't be modified
+   */
+  private final JsonPath pathsTree;
+  @Getter(AccessLevel.NONE)
+  private final Map<String, Column> columnsByJsonPath;
+  /**
+   * Templates of paths of all ARRAY json paths of the tree
+   */
+  @Getter(AccessLevel.NONE)
+  private final Map<String, JsonPathTemplate> arrayTemplates;
+  /**
+   * The maximal number of nested arrays of one JSON path
+   */
+  private final int maxNestedArrays;
+  /**
+   * No JSON path contains {@link JsonPath#ARRAY_IDENTIFIER_WITH_BRACKETS}, so one JSON document gives at most one row
+   */
+  private final boolean flat;
+  /**
+   * Array converted item by item (see {@link CsvDefinition#getSplitPath()}), null if JSON is converted as a whole
+   */
+  private final SplitPath splitPath;
+
+  /**
+   * @param csvDefinition definition of target CSV format
+   */
+  public ConversionPlan(CsvDefinition csvDefinition) {
+    this.csvDefinition = csvDefinition;
+    this.fieldCount = csvDefinition.getFields().size();
+
+    boolean streamable = true;
+    boolean producingRows = true;
+    Set<String> jsonPaths = new HashSet<>();
+    List<Column> columns = new ArrayList<>();
+    Map<String, Column> columnsByJsonPath = new HashMap<>();
+    List<List<List<PathSegment>>> fieldChunks = new ArrayList<>();
+    List<Integer> levelColumnCounts = new ArrayList<>();
+    List<List<PathSegment>> deepestChunks = List.of(List.of());
+    JsonPath pathsTree = new JsonPath(JsonPathType.ROOT, new ArrayList<>());
+
+    for (Field field : csvDefinition.getFields()) {
+      String jsonPath = field.getJsonPath();
+      addToPathsTree(pathsTree, jsonPath);
+      if (!jsonPaths.add(jsonPath)) {
+        log.debug("JSON path {} is defined more than once, no row can be generated.", jsonPath);
+        producingRows = false;
+      }
+      if (DefaultCsvDefinition.EMPTY_JSON_PATH.equals(jsonPath)) {
+        continue;
+      }
+      Field fieldByJsonPath = csvDefinition.getFieldByJsonPath(jsonPath);
+      int nestedArrays = JsonPath.countNestedArrays(jsonPath);
+
+      List<PathSegment> segments = PathSegment.parse(jsonPath);
+      Column column;
+      if (segments == null) {
+        log.debug("JSON path {} isn't supported by streaming conversion.", jsonPath);
+        streamable = false;
+        column = new Column(field, fieldByJsonPath, nestedArrays, 0, null, 0);
+      } else {
+        List<List<PathSegment>> chunks = splitByArrays(segments);
+        if (chunks.size() < deepestChunks.size()) {
+          log.debug("JSON path {} is less nested than previous paths, no row can be generated.", jsonPath);
+          producingRows = false;
+        } else {
+          deepestChunks = chunks;
+        }
+        fieldChunks.add(chunks);
+        int level = chunks.size() - 1;
+        while (levelColumnCounts.size() <= level) {
+          levelColumnCounts.add(0);
+        }
+        int levelPosition = levelColumnCounts.get(level);
+        levelColumnCounts.set(level, levelPosition + 1);
+        column = new Column(field, fieldByJsonPath, nestedArrays, level, List.copyOf(chunks.get(level)), levelPosition);
+      }
+      columns.add(column);
+      columnsByJsonPath.putIfAbsent(jsonPath, column);
+    }
+
+    this.maxNestedArrays = columns.stream().mapToInt(Column::getNestedArrays).max().orElse(0);
+    this.flat = maxNestedArrays == 0;
+    Map<String, JsonPathTemplate> arrayTemplates = new HashMap<>();
+    collectArrayTemplates(pathsTree, arrayTemplates);
+
+    List<Level> levels = new ArrayList<>();
+    if (streamable) {
+      for (int depth = 0; depth < deepestChunks.size(); depth++) {
+        levels.add(new Level(depth, depth < levelColumnCounts.size() ? levelColumnCounts.get(depth) : 0));
+      }
+      for (int i = 0; i < columns.size() && producingRows; i++) {
+        List<List<PathSegment>> chunks = fieldChunks.get(i);
+        if (!deepestChunks.subList(0, chunks.size() - 1).equals(chunks.subList(0, chunks.size() - 1))) {
+          log.debug("JSON paths aren't hierarchical combination, no row can be generated.");
+          producingRows = false;
+        }
+        Column column = columns.get(i);
+        levels.get(column.getLevel()).root.descendant(column.getRelativePath()).columns.add(column.getLevelPosition());
+      }
+      for (int depth = 1; depth < levels.size(); depth++) {
+        levels.get(depth - 1).root.descendant(deepestChunks.get(depth - 1)).nextLevel = true;
+      }
+    }
+
+    this.streamable = streamable;
+    this.producingRows = producingRows;
+    this.columns = Collections.unmodifiableList(columns);
+    this.columnsByJsonPath = columnsByJsonPath;
+    this.arrayTemplates = arrayTemplates;
+    this.levels = Collections.unmodifiableList(levels);
+    this.pathsTree = pathsTree.toUnmodifiable();
+    this.rowCompletable = countRowCells(pathsTree) == fieldCount;
+    this.splitPath = csvDefinition.getSplitPath() == null ? null : new SplitPath(csvDefinition);
+  }
+
+  /**
+   * Creates plan with the same compiled information and output of csvDefinition.
+   */
+  private ConversionPlan(ConversionPlan plan, CsvDefinition csvDefinition) {
+    this.csvDefinition = csvDefinition;
+    this.fieldCount = plan.fieldCount;
+    this.streamable = plan.streamable;
+    this.producingRows = plan.producingRows;
+    this.rowCompletable = plan.rowCompletable;
+    this.columns = plan.columns;
+    this.levels = plan.levels;
+    this.pathsTree = plan.pathsTree;
+    this.columnsByJsonPath = plan.columnsByJsonPath;
+    this.arrayTemplates = plan.arrayTemplates;
+    this.maxNestedArrays = plan.maxNestedArrays;
+    this.flat = plan.flat;
+    this.splitPath = plan.splitPath;
+  }
+
+  /**
+   * Creates plan writing to the output of another definition (e.g. other file or stream), the compiled information
+   * is shared with this plan, so nothing is compiled again.
+   *
+   * @param csvDefinition definition with the same fields and split path as the definition of this plan
+   * @return plan converting to the output of csvDefinition
+   */
+  public ConversionPlan withOutput(CsvDefinition csvDefinition) {
+    if (!List.copyOf(this.csvDefinition.getFields()).equals(List.copyOf(csvDefinition.getFields()))
+        || !Objects.equals(this.csvDefinition.getSplitPath(), csvDefinition.getSplitPath())) {
+      throw new IllegalArgumentException(String.format(
+          "CSV definition %s doesn't have the same fields and split path as CSV definition %s of the plan.",
+          csvDefinition.getName(), this.csvDefinition.getName()));
+    }
+    return new ConversionPlan(this, csvDefinition);
+  }
+
+  /**
+   * @param jsonPath JSON path of field
+   * @return column of the first field with jsonPath, null for {@link DefaultCsvDefinition#EMPTY_JSON_PATH}
+   */
+  public Column getColumn(String jsonPath) {
+    return columnsByJsonPath.get(jsonPath);
+  }
+
+  /**
+   * @param arrayPath JSON path of ARRAY json path of the tree (e.g. organizations[*].users)
+   * @return template of arrayPath
+   */
+  public JsonPathTemplate getArrayTemplate(String arrayPath) {
+    return arrayTemplates.get(arrayPath);
+  }
+
+  /**
+   * @return skeleton of JSON paths tree shared by all conversions, it can't be modified and doesn't contain
+   * array sizes (see {@link #createPathsTree()})
+   */
+  public JsonPath getPathsTree() {
+    return pathsTree;
+  }
+
+  /**
+   * @return new JSON paths tree with the same paths as the skeleton of this plan and without array sizes
+   */
+  public JsonPath createPathsTree() {
+    return copyPathsTree(pathsTree);
+  }
+
+  /**
+   * @return the most nested level
+   */
+  public int getDeepestLevel() {
+    return levels.size() - 1;
+  }
+
+  /**
+   * Adds paths of one field to JSON paths tree - array paths of all its arrays for paths with some array
+   * (e.g. organizations and organizations[*].users for organizations[*].users[*].id) and the property path.
+   * Every array is a node of the tree, even if no field is defined directly in its items.
+   */
+  private static void addToPathsTree(JsonPath pathsTree, String jsonPath) {
+    Deque<String> arrayPaths = new ArrayDeque<>();
+    for (String path = jsonPath; JsonPath.countNestedArrays(path) > 0; ) {
+      path = JsonPath.getParentJsonPathString(path);
+      arrayPaths.push(path);
+    }
+    for (String arrayPath : arrayPaths) {
+      pathsTree.addNewDescendantJsonPath(arrayPath, JsonPathType.ARRAY);
+    }
+    pathsTree.addNewDescendantJsonPath(jsonPath, JsonPathType.PROPERTY);
+  }
+
+  /**
+   * Counts the maximal number of cells of one row generated from path - cells of leaf children of path before
+   * the ARRAY child are in all rows of the ARRAY child, cells after it aren't.
+   *
+   * @param path JSON path with children
+   * @return the maximal number of cells of one row
+   */
+  private static int countRowCells(JsonPath path) {
+    int max = 0;
+    int leaves = 0;
+    for (JsonPath child : path.getChildren()) {
+      if (child.getChildren().isEmpty()) {
+        max = Math.max(max, ++leaves);
+      } else {
+        max = Math.max(max, leaves + countRowCells(child));
+      }
+    }
+    return max;
+  }
+
+  private static void collectArrayTemplates(JsonPath path, Map<String, JsonPathTemplate> arrayTemplates) {
+    for (JsonPath child : path.getChildren()) {
+      if (!child.getChildren().isEmpty()) {
+        arrayTemplates.put(child.getPath(), new JsonPathTemplate(child.getPath()));
+        collectArrayTemplates(child, arrayTemplates);
+      }
+    }
+  }
+
+  private static JsonPath copyPathsTree(JsonPath path) {
+    JsonPath copy = new JsonPath(JsonPathType.ROOT, new ArrayList<>(path.getChildren().size()));
+    copyChildren(path, copy, copy);
+    return copy;
+  }
+
+  private static void copyChildren(JsonPath path, JsonPath copy, JsonPath copyRoot) {
+    for (JsonPath child : path.getChildren()) {
+      JsonPath childCopy = copyRoot.addNewDescendantJsonPath(child.getPath(), copy, child.getType());
+      copyChildren(child, childCopy, copyRoot);
+    }
+  }
+
+  /**
+   * Splits path segments by array identifiers (e.g. organizations[*].users[*].id -> [organizations], [users], [id]).
+   *
+   * @param segments path segments
+   * @return segments between array identifiers
+   */
+  private static List<List<PathSegment>> splitByArrays(List<PathSegment> segments) {
+    List<List<PathSegment>> chunks = new ArrayList<>();
+    List<PathSegment> chunk = new ArrayList<>();
+    for (PathSegment segment : segments) {
+      if (segment.isAnyIndex()) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>();
+      } else {
+        chunk.add(segment);
+      }
+    }
+    chunks.add(chunk);
+    return chunks;
+  }
+
+  /**
+   * Array, which items are converted one by one (see {@link CsvDefinition#getSplitPath()}). The path contains
+   * only properties followed by {@link JsonPath#ARRAY_IDENTIFIER_WITH_BRACKETS}, fields outside of the array have
+   * to be simple paths, which don't contain the array.
+   */
+  public static class SplitPath {
+    /**
+     * Names of properties from the document to the array (empty if the document is the array)
+     */
+    private final List<String> arrayPath;
+    /**
+     * Names of properties needed by fields outside of the array, for every object of arrayPath
+     */
+    private final List<Set<String>> capturedProperties;
+
+    private SplitPath(CsvDefinition csvDefinition) {
+      String splitPath = csvDefinition.getSplitPath();
+      List<PathSegment> segments = PathSegment.parse(splitPath);
+      int arrayDepth = segments == null ? -1 : segments.size() - 1;
+      if (arrayDepth < 0 || !segments.get(arrayDepth).isAnyIndex()
+          || !segments.subList(0, arrayDepth).stream().allMatch(PathSegment::isProperty)) {
+        throw new IllegalArgumentException(String.format(
+            "Split path %s of CSV definition %s has to contain only properties followed by %s.",
+            splitPath, csvDefinition.getName(), JsonPath.ARRAY_IDENTIFIER_WITH_BRACKETS));
+      }
+      List<String> arrayPath = new ArrayList<>(arrayDepth);
+      List<Set<String>> capturedProperties = new ArrayList<>(arrayDepth);
+      for (int depth = 0; depth < arrayDepth; depth++) {
+        arrayPath.add(segments.get(depth).getName());
+        capturedProperties.add(new HashSet<>());
+      }
+
+      boolean itemFields = false;
+      for (Field field : csvDefinition.getFields()) {
+        String jsonPath = field.getJsonPath();
+        if (DefaultCsvDefinition.EMPTY_JSON_PATH.equals(jsonPath)) {
+          continue;
+        }
+        List<PathSegment> fieldSegments = PathSegment.parse(jsonPath);
+        if (isInside(jsonPath, fieldSegments, splitPath, segments)) {
+          itemFields = true;
+          continue;
+        }
+        if (fieldSegments == null || fieldSegments.stream().anyMatch(PathSegment::isAnyIndex)) {
+          throw new IllegalArgumentException(String.format(
+              "Field %s outside of split path %s has to be a simple path.", jsonPath, splitPath));
+        }
+        int depth = 0;
+        while (depth < arrayDepth && depth < fieldSegments.size()
+            && fieldSegments.get(depth).equals(segments.get(depth))) {
+          depth++;
+        }
+        if (depth == fieldSegments.size() || depth == arrayDepth) {
+          throw new IllegalArgumentException(String.format(
+              "Field %s can't contain items of split path %s.", jsonPath, splitPath));
+        }
+        if (fieldSegments.get(depth).isProperty()) {
+          capturedProperties.get(depth).add(fieldSegments.get(depth).getName());
+        }
+      }
+      if (!itemFields) {
+        throw new IllegalArgumentException(String.format("No field of CSV definition %s is inside of split path %s.",
+            csvDefinition.getName(), splitPath));
+      }
+      this.arrayPath = Collections.unmodifiableList(arrayPath);
+      for (int depth = 0; depth < arrayDepth; depth++) {
+        capturedProperties.set(depth, Collections.unmodifiableSet(capturedProperties.get(depth)));
+      }
+      this.capturedProperties = Collections.unmodifiableList(capturedProperties);
+    }
+
+    /**
+     * @return true if field is inside of items of the split array. Paths, which aren't supported
+     * by {@link PathSegment}, are compared as strings.
+     */
+    private static boolean isInside(String jsonPath, List<PathSegment> fieldSegments, String splitPath,
+                                    List<PathSegment> segments) {
+      if (fieldSegments != null) {
+        return fieldSegments.size() >= segments.size() && fieldSegments.subList(0, segments.size()).equals(segments);
+      }
+      String path = stripRoot(jsonPath);
+      String prefix = stripRoot(splitPath);
+      return path.startsWith(prefix) && (path.length() == prefix.length()
+          || path.charAt(prefix.length()) == '.' || path.charAt(prefix.length()) == '[');
+    }
+
+    private static String stripRoot(String jsonPath) {
+      if (jsonPath.startsWith("$.")) {
+        return jsonPath.substring(2);
+      }
+      return jsonPath.startsWith("$") ? jsonPath.substring(1) : jsonPath;
+    }
+
+    /**
+     * @return names of properties from the document to the array (empty if the document is the array)
+     */
+    public List<String> getArrayPath() {
+      return arrayPath;
+    }
+
+    /**
+     * @param depth depth of object of {@link #getArrayPath()} (0 is the document)
+     * @return names of properties of the object needed by fields outside of the array
+     */
+    public Set<String> getCapturedProperties(int depth) {
+      return capturedProperties.get(depth);
+    }
+  }
+
+  /**
+   * One CSV column (field with not empty JSON path).
+   */
+  @Getter
+  public static class Column {
+    /**
+     * Definition of the field in CSV definition
+     */
+    private final Field field;
+    /**
+     * Field found in CSV definition by JSON path of the field, which is used by not streaming conversion
+     */
+    private final Field fieldByJsonPath;
+    /**
+     * Number of {@link JsonPath#ARRAY_IDENTIFIER_WITH_BRACKETS} in JSON path of the field
+     */
+    private final int nestedArrays;
+    /**
+     * Parent array path (e.g. organizations[*].users for organizations[*].users[*].id), null if there is no array
+     */
+    private final String parentJsonPath;
+    /**
+     * JSON path of the field split to fragments and index slots
+     */
+    private final JsonPathTemplate jsonPathTemplate;
+    /**
+     * Value mapper of the field or its custom mapper adapted to value mapper, null if the field doesn't have any
+     */
+    private final ValueMapper mapper;
+    /**
+     * Level of nested arrays of the field, 0 if the path isn't streamable
+     */
+    private final int level;
+    /**
+     * Path relative to the item of level array, null if the path isn't streamable
+     */
+    private final List<PathSegment> relativePath;
+    /**
+     * Position of the column value in values of its level
+     */
+    private final int levelPosition;
+
+    private Column(Field field, Field fieldByJsonPath, int nestedArrays, int level, List<PathSegment> relativePath,
+                   int levelPosition) {
+      this.field = field;
+      this.fieldByJsonPath = fieldByJsonPath;
+      this.nestedArrays = nestedArrays;
+      this.level = level;
+      this.relativePath = relativePath;
+      this.levelPosition = levelPosition;
+      this.parentJsonPath = nestedArrays > 0 ? JsonPath.getParentJsonPathString(field.getJsonPath()) : null;
+      this.jsonPathTemplate = new JsonPathTemplate(field.getJsonPath());
+      if (field.getValueMapper() != null) {
+        this.mapper = field.getValueMapper();
+      } else {
+        this.mapper = field.getCustomMapper() == null ? null : ValueMapper.of(field.getCustomMapper());
+      }
+    }
+
+    /**
+     * @return JSON path of the field
+     */
+    public String getJsonPath() {
+      return field.getJsonPath();
+    }
+
+    /**
+     * @return true if value of the field is required
+     */
+    public boolean isRequired() {
+      return field.isRequired();
+    }
+  }
+
+  /**
+   * Level of nested arrays.
+   */
+  @Getter
+  public static class Level {
+    private final int depth;
+    private final MatchNode root = new MatchNode();
+    private final int columnCount;
+
+    private Level(int depth, int columnCount) {
+      this.depth = depth;
+      this.columnCount = columnCount;
+    }
+  }
+
+  /**
+   * Node of relative paths tree, matched against JSON values during streaming.
+   */
+  public static class MatchNode {
+    private final Map<String, MatchNode> properties = new HashMap<>();
+    private final Map<Integer, MatchNode> indexes = new HashMap<>();
+    private final Map<String, MatchNode> unmodifiableProperties = Collections.unmodifiableMap(properties);
+    private final Map<Integer, MatchNode> unmodifiableIndexes = Collections.unmodifiableMap(indexes);
+    private final List<Integer> columns = new ArrayList<>();
+    private final List<Integer> unmodifiableColumns = Collections.unmodifiableList(columns);
+    private boolean nextLevel;
+
+    private MatchNode() {
+    }
+
+    /**
+     * @return child nodes by property name
+     */
+    public Map<String, MatchNode> getProperties() {
+      return unmodifiableProperties;
+    }
+
+    /**
+     * @return child nodes by array index
+     */
+    public Map<Integer, MatchNode> getIndexes() {
+      return unmodifiableIndexes;
+    }
+
+    /**
+     * @return level positions of columns, which value is this node
+     */
+    public List<Integer> getColumns() {
+      return unmodifiableColumns;
+    }
+
+    /**
+     * @return true if this node is array of the next level
+     */
+    public boolean isNextLevel() {
+      return nextLevel;
+    }
+
+    /**
+     * @return true if the value of this node is needed more times, so it has to be read to memory at once
+     */
+    public boolean needsMaterialization() {
+      boolean hasChildren = !properties.isEmpty() || !indexes.isEmpty() || nextLevel;
+      return (!columns.isEmpty() && hasChildren) || (nextLevel && !indexes.isEmpty());
+    }
+
+    private MatchNode descendant(List<PathSegment> path) {
+      MatchNode node = this;
+      for (PathSegment segment : path) {
+        node = segment.isProperty()
+            ? node.properties.computeIfAbsent(segment.getName(), name -> new MatchNode())
+            : node.indexes.computeIfAbsent(segment.getIndex(), index -> new MatchNode());
+      }
+      return node;
+    }
+  }
+}
@@ -8,8 +8,6 @@ import lombok.Builder;
 import lombok.Value;
 import org.apache.commons.lang3.StringUtils;
 
-import static cz.inventi.jsontocsvconverter.model.JsonPath.ESCAPED_ARRAY_IDENTIFIER;
-
 /**
  * Defines where needed JSON property value (will be written to this CSV cell) should be searched (by path).
  */
@@ -31,6 +29,15 @@ public class CsvCell {
    */
   Field currentField;
 
+  /**
+   * jsonPath split to fragments and index slots, shared by all cells of the same jsonPath
+   */
+  JsonPathTemplate jsonPathTemplate;
+
+  public CsvCell(String jsonPath, List<Integer> indexes, Field currentField) {
+    this(jsonPath, indexes, currentField, new JsonPathTemplate(jsonPath));
+  }
+
   /**
    * @return true if jsonPath is equal to special constant EMPTY_JSON_PATH, otherwise false
    */
@@ -42,10 +49,7 @@ public class CsvCell {
    * @return jsonPath with filled indexes instead of [*] (e.g. organizations[*].users[*].id -> organizations[0].users[2].id)
    */
   public String getJsonPathWithFilledIndexes() {
-    String result = jsonPath;
-    for (int index : indexes) {
-      result = result.replaceFirst(ESCAPED_ARRAY_IDENTIFIER, index + "");
-    }
-    return result;
+    JsonPathTemplate template = jsonPathTemplate != null ? jsonPathTemplate : new JsonPathTemplate(jsonPath);
+    return template.fill(indexes);
   }
 }
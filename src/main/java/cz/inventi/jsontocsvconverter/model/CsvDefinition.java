@@ -6,6 +6,11 @@ import java.util.Collection;
  * Definition of target CSV file
  */
 public interface CsvDefinition {
+  /**
+   * Default size (in chars) of the output buffer
+   */
+  int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
   /**
    * @return Name of this definition
    */
@@ -40,6 +45,31 @@ public interface CsvDefinition {
     return "\r\n";
   }
 
+  /**
+   * @return size (in chars) of the buffer used for writing of CSV output, output to a file is encoded to a byte buffer
+   * of the same number of bytes
+   */
+  default int getBufferSize() {
+    return DEFAULT_BUFFER_SIZE;
+  }
+
+  /**
+   * @return maximal number of buffers of encoded rows waiting for a dedicated writer thread, 0 means that rows
+   * are written by the converting thread. When the queue is full, conversion waits for the writer thread.
+   */
+  default int getWriteQueueDepth() {
+    return 0;
+  }
+
+  /**
+   * @return path of array (e.g. data.items[*]), which items are converted one by one while the JSON is read,
+   * so the whole array is never loaded to memory, null if the JSON is converted as a whole.
+   * Fields outside of the array have to be simple paths, their values are read once and added to rows of all items.
+   */
+  default String getSplitPath() {
+    return null;
+  }
+
   /**
    * @return collection of Fields defining what properties from source JSON should be converted to target CSV
    */
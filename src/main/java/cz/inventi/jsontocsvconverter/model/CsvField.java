@@ -1,6 +1,8 @@
 package cz.inventi.jsontocsvconverter.model;
 
+import cz.inventi.jsontocsvconverter.mapper.ValueMapper;
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Value;
 
 import java.util.List;
@@ -12,6 +14,7 @@ import java.util.function.BiFunction;
  */
 @Value
 @AllArgsConstructor
+@Builder(toBuilder = true)
 public class CsvField implements Field {
   /**
    * Name of related column in output CSV
@@ -19,7 +22,20 @@ public class CsvField implements Field {
   String name;
   String jsonPath;
   boolean required;
+  /**
+   * Mapper of the value, it has to be thread-safe for parallel conversions (see {@link Field#getCustomMapper()})
+   */
   BiFunction<Field, String, List<String>> customMapper;
+  /**
+   * Custom mapper always gives the same result for the same value, so its results can be reused
+   */
+  @Builder.Default
+  boolean customMapperPure = true;
+  /**
+   * Mapper appending converted values directly to the row, it is used instead of customMapper if defined,
+   * it has to be thread-safe the same way as customMapper
+   */
+  ValueMapper valueMapper;
 
   public CsvField(String name, String jsonPath) {
     this(name, jsonPath, false, null);
@@ -28,4 +44,13 @@ public class CsvField implements Field {
   public CsvField(String name, String jsonPath, boolean required) {
     this(name, jsonPath, required, null);
   }
+
+  public CsvField(String name, String jsonPath, boolean required, BiFunction<Field, String, List<String>> customMapper) {
+    this(name, jsonPath, required, customMapper, true, null);
+  }
+
+  public CsvField(String name, String jsonPath, boolean required, BiFunction<Field, String, List<String>> customMapper,
+                  boolean customMapperPure) {
+    this(name, jsonPath, required, customMapper, customMapperPure, null);
+  }
 }
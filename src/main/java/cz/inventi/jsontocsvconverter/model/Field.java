@@ -1,5 +1,7 @@
 package cz.inventi.jsontocsvconverter.model;
 
+import cz.inventi.jsontocsvconverter.mapper.ValueMapper;
+
 import java.util.List;
 import java.util.function.BiFunction;
 
@@ -24,7 +26,28 @@ public interface Field {
 
   /**
    * @return Value from the JSON is changed to different value based on converter.
+   * Converter should be a pure function - its result for a value shared by more rows (e.g. value of an array item
+   * repeated in rows of all items of its nested array) is computed once and reused for all these rows.
+   * Converter has to be thread-safe, because it is called concurrently by worker threads of parallel conversions
+   * (JSON lines converted with {@link ParallelConversionOptions} or more definitions converted on more threads).
    */
   BiFunction<Field, String, List<String>> getCustomMapper();
 
+  /**
+   * @return Mapper appending values converted from the raw JSON value directly to the row, it is used instead
+   * of {@link #getCustomMapper()} if defined. Converter should be a pure function and has to be thread-safe the same
+   * way as custom mapper.
+   */
+  default ValueMapper getValueMapper() {
+    return null;
+  }
+
+  /**
+   * @return false if result of converter can differ for the same value (e.g. it contains generated identifiers),
+   * so it has to be applied for every row separately
+   */
+  default boolean isCustomMapperPure() {
+    return true;
+  }
+
 }
@@ -1,15 +1,20 @@
 package cz.inventi.jsontocsvconverter.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import cz.inventi.jsontocsvconverter.model.csvdefinitions.DefaultCsvDefinition;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import lombok.Value;
+import lombok.experimental.NonFinal;
 import lombok.extern.log4j.Log4j2;
 import org.apache.commons.lang3.StringUtils;
 
@@ -19,8 +24,6 @@ import org.apache.commons.lang3.StringUtils;
  * Tree of JSON paths is used to constructing separated records.
  */
 @Value
-@AllArgsConstructor
-@Builder(toBuilder = true)
 @Log4j2
 public class JsonPath {
   public static final String ARRAY_IDENTIFIER = "*";
@@ -38,32 +41,85 @@ public class JsonPath {
   String path;
   /**
    * Children of JSON path (e.g. parent ARRAY 'organizations[*].users' -> child PROPERTY 'organizations[*].users[*].id')
-   * Is used only for {@link JsonPathType#ARRAY}
+   * Is used only for {@link JsonPathType#ARRAY}.
+   * The list can't be modified, new descendants are added
+   * by {@link #addNewDescendantJsonPath(String, JsonPath, JsonPathType)}, so they are always found
+   * by {@link #findDescendantJsonPath(String)}.
    */
   List<JsonPath> children;
   /**
-   * Map of jsonPath indexes -> arraySize (e.g. jsonPath is 'organizations[*].users[*].emails', map contains [0,1] -> 2,
+   * Sizes of arrays by jsonPath indexes (e.g. jsonPath is 'organizations[*].users[*].emails', sizes contain [0,1] -> 2,
    * it means that array organizations[0].users[1].emails has size 2).
    * Is used only for {@link JsonPathType#ARRAY}
    */
-  Map<List<Integer>, Integer> arrayIndexes;
+  ArraySizes arrayIndexes;
+  /**
+   * Children of JSON path, {@link #children} is unmodifiable view of this list
+   */
+  @Getter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  List<JsonPath> modifiableChildren;
+  /**
+   * Index of all descendants of this path, by their paths
+   */
+  @Getter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  Map<String, JsonPath> descendants = new HashMap<>();
+  /**
+   * Parent of this path in the tree, null for the root of the tree
+   */
+  @NonFinal
+  @Getter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  JsonPath parent;
 
   public JsonPath(String path, JsonPathType type) {
-    this.path = path;
-    this.type = type;
-    this.children = new ArrayList<>();
-    this.arrayIndexes = new HashMap<>();
+    this(type, path, new ArraySizes(), new ArrayList<>());
   }
 
   public JsonPath(JsonPathType type, List<JsonPath> children) {
-    this.path = null;
+    this(type, null, children, new ArraySizes());
+  }
+
+  /**
+   * Creates root of new tree. Given children (with all their descendants) are copied and indexed, so the new path
+   * doesn't share its tree with them - only {@link ArraySizes} of the descendants are shared.
+   *
+   * @param type         type of json path
+   * @param path         json path
+   * @param children     children of json path, null if it doesn't have any
+   * @param arrayIndexes sizes of arrays of json path
+   */
+  @Builder(toBuilder = true)
+  public JsonPath(JsonPathType type, String path, List<JsonPath> children, ArraySizes arrayIndexes) {
+    this(type, path, arrayIndexes, new ArrayList<>());
+    if (children != null) {
+      copyChildren(children, this);
+    }
+  }
+
+  private JsonPath(JsonPathType type, String path, ArraySizes arrayIndexes, List<JsonPath> modifiableChildren) {
     this.type = type;
-    this.children = children;
-    this.arrayIndexes = new HashMap<>();
+    this.path = path;
+    this.arrayIndexes = arrayIndexes;
+    this.modifiableChildren = modifiableChildren;
+    this.children = Collections.unmodifiableList(modifiableChildren);
+  }
+
+  private static void copyChildren(List<JsonPath> children, JsonPath parentPath) {
+    for (JsonPath child : children) {
+      JsonPath copy = new JsonPath(child.type, child.path, child.arrayIndexes, new ArrayList<>());
+      addChild(parentPath, copy, false);
+      copyChildren(child.children, copy);
+    }
   }
 
   /**
    * Finds existing JSON path, that is a descendant of this path, by jsonPath.
+   * Descendants are indexed by their paths, so the tree isn't searched.
    *
    * @param jsonPath jsonPath of descendant JsonPath to be found
    *                 (e.g. 'contacts.emails[*].address' as property path or 'contacts.emails' as array path)
@@ -73,31 +129,21 @@ public class JsonPath {
     if (jsonPath == null) {
       return null;
     }
-    for (JsonPath path : children) {
-      if (StringUtils.equals(path.getPath(), jsonPath)) {
-        return path;
-      }
-
-      JsonPath tmp = path.findDescendantJsonPath(jsonPath);
-
-      if (tmp != null) {
-        return tmp;
-      }
-    }
-
-    return null;
+    return descendants.get(jsonPath);
   }
 
   /**
    * Creates new JsonPath with jsonPathString and adds as descendant of this path (to subtree).
    * If needed JsonPath already exists, then returns existing (nothing new will be added).
+   * The new path is indexed by its parent and by all ancestors of the parent, so it is found
+   * by {@link #findDescendantJsonPath(String)} of any of them.
    * <ol>
    *   <li>If parentPath is provided, adds new path as child of parentPath</li>
    *   <li>Otherwise adds it directly to children of this path</li>
    * </ol>
    *
    * @param jsonPathString json path
-   * @param parentPath     optional parent path, if already known
+   * @param parentPath     optional parent path (this path or its descendant), if already known
    * @param type           type of json path
    * @return new added JsonPath or existing if already exists
    */
@@ -111,16 +157,28 @@ public class JsonPath {
     JsonPath newPath = new JsonPath(jsonPathString, type);
 
     if (parentPath != null) {
-      parentPath.getChildren().add(newPath);
-    } else if (jsonPathString.equals(DefaultCsvDefinition.EMPTY_JSON_PATH)) {
-      children.add(0, newPath);
+      addChild(parentPath, newPath, false);
     } else {
-      children.add(newPath);
+      addChild(this, newPath, jsonPathString.equals(DefaultCsvDefinition.EMPTY_JSON_PATH));
     }
-
     return newPath;
   }
 
+  /**
+   * Adds child to parentPath and to index of parentPath and of all its ancestors up to the root of the tree.
+   */
+  private static void addChild(JsonPath parentPath, JsonPath child, boolean first) {
+    if (first) {
+      parentPath.modifiableChildren.add(0, child);
+    } else {
+      parentPath.modifiableChildren.add(child);
+    }
+    child.parent = parentPath;
+    for (JsonPath ancestor = parentPath; ancestor != null; ancestor = ancestor.parent) {
+      ancestor.descendants.put(child.getPath(), child);
+    }
+  }
+
   /**
    * Tries to find appropriate descendant parentPath
    * and calls {@link #addNewDescendantJsonPath(String, JsonPath, JsonPathType)}.
@@ -135,6 +193,27 @@ public class JsonPath {
     return addNewDescendantJsonPath(jsonPathString, parentPath, type);
   }
 
+  /**
+   * Creates copy of this tree, which can't be changed - lists of children are unmodifiable and the copy doesn't
+   * contain array sizes ({@link #getArrayIndexes()} is null). All descendants of the copy are indexed,
+   * so they can be found by {@link #findDescendantJsonPath(String)}.
+   *
+   * @return unmodifiable copy of this tree
+   */
+  JsonPath toUnmodifiable() {
+    List<JsonPath> childCopies = new ArrayList<>(children.size());
+    for (JsonPath child : children) {
+      childCopies.add(child.toUnmodifiable());
+    }
+    JsonPath copy = new JsonPath(type, path, null, List.copyOf(childCopies));
+    for (JsonPath child : copy.children) {
+      child.parent = copy;
+      copy.descendants.put(child.getPath(), child);
+      copy.descendants.putAll(child.descendants);
+    }
+    return copy;
+  }
+
   /**
    * Finds all array indexes from JSON path.
    * e.g. JSON path = cash.registers[1].purchasers[3].values[4] => result is [1, 3, 4]
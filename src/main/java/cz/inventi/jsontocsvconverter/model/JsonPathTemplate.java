@@ -0,0 +1,141 @@
+package cz.inventi.jsontocsvconverter.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON path split once by {@link JsonPath#ARRAY_IDENTIFIER}s to constant fragments and index slots
+ * (e.g. organizations[*].users[*].id -> 'organizations[', slot, '].users[', slot, '].id').
+ * Slots are filled by concrete array indexes without any regex.
+ */
+@Getter
+@EqualsAndHashCode
+public class JsonPathTemplate {
+  /**
+   * Original JSON path
+   */
+  private final String jsonPath;
+  /**
+   * Constant parts of JSON path between slots
+   */
+  private final String[] fragments;
+  /**
+   * Parsed segments of JSON path, null if JSON path contains syntax not supported by {@link PathSegment}
+   */
+  private final List<PathSegment> segments;
+  /**
+   * Positions of {@link JsonPath#ARRAY_IDENTIFIER_WITH_BRACKETS} segments in segments
+   */
+  private final int[] slotSegments;
+
+  /**
+   * @param jsonPath JSON path (e.g. organizations[*].users[*].id)
+   */
+  public JsonPathTemplate(String jsonPath) {
+    this.jsonPath = jsonPath;
+    List<String> fragments = new ArrayList<>();
+    int start = 0;
+    int slot;
+    while ((slot = jsonPath.indexOf(JsonPath.ARRAY_IDENTIFIER, start)) >= 0) {
+      fragments.add(jsonPath.substring(start, slot));
+      start = slot + JsonPath.ARRAY_IDENTIFIER.length();
+    }
+    fragments.add(jsonPath.substring(start));
+    this.fragments = fragments.toArray(new String[0]);
+
+    List<PathSegment> segments = PathSegment.parse(jsonPath);
+    this.segments = segments == null ? null : List.copyOf(segments);
+    this.slotSegments = segments == null ? null : new int[getSlotCount()];
+    for (int i = 0, slotIndex = 0; segments != null && i < segments.size(); i++) {
+      if (segments.get(i).isAnyIndex()) {
+        slotSegments[slotIndex++] = i;
+      }
+    }
+  }
+
+  /**
+   * @return true if JSON path can be evaluated directly by its segments
+   */
+  public boolean isNavigable() {
+    return segments != null;
+  }
+
+  /**
+   * @param slot index slot
+   * @return number of segments before the slot (segments of the array path), size of segments for slot count
+   */
+  public int getSegmentCountBefore(int slot) {
+    return slot < slotSegments.length ? slotSegments[slot] : segments.size();
+  }
+
+  /**
+   * @return position of the first segment after the last slot (start of the path relative to the item
+   * of the most nested array)
+   */
+  public int getRelativeSegmentsStart() {
+    return slotSegments.length == 0 ? 0 : slotSegments[slotSegments.length - 1] + 1;
+  }
+
+  /**
+   * @return number of index slots
+   */
+  public int getSlotCount() {
+    return fragments.length - 1;
+  }
+
+  /**
+   * @param indexes indexes for the first slots
+   * @return JSON path with filled indexes (e.g. organizations[*].users[*].id -> organizations[0].users[2].id)
+   */
+  public String fill(List<Integer> indexes) {
+    StringBuilder result = new StringBuilder(jsonPath.length() + 4 * indexes.size());
+    for (int i = 0; i < getSlotCount(); i++) {
+      result.append(fragments[i]);
+      if (i < indexes.size()) {
+        result.append(indexes.get(i).intValue());
+      } else {
+        result.append(JsonPath.ARRAY_IDENTIFIER);
+      }
+    }
+    return result.append(fragments[fragments.length - 1]).toString();
+  }
+
+  /**
+   * @param indexes indexes for the first slots
+   * @param count   number of slots to be filled
+   * @return JSON path with filled indexes (e.g. organizations[*].users[*].id -> organizations[0].users[*].id)
+   */
+  public String fill(int[] indexes, int count) {
+    return fillTo(new StringBuilder(jsonPath.length() + 4 * count), indexes, count).toString();
+  }
+
+  /**
+   * @param indexes indexes for the first slots
+   * @param count   number of slots to be filled
+   * @return path of the first not filled array with filled indexes
+   * (e.g. organizations[*].users[*].id with count 1 -> organizations[0].users)
+   */
+  public String fillArrayPath(int[] indexes, int count) {
+    StringBuilder result = fillTo(new StringBuilder(jsonPath.length() + 4 * count), indexes, count);
+    int arrayIdentifier = result.indexOf(JsonPath.ARRAY_IDENTIFIER_WITH_BRACKETS);
+    if (arrayIdentifier >= 0) {
+      result.setLength(arrayIdentifier);
+    }
+    return result.toString();
+  }
+
+  private StringBuilder fillTo(StringBuilder result, int[] indexes, int count) {
+    for (int i = 0; i < getSlotCount(); i++) {
+      result.append(fragments[i]);
+      if (i < count) {
+        result.append(indexes[i]);
+      } else {
+        result.append(JsonPath.ARRAY_IDENTIFIER);
+      }
+    }
+    return result.append(fragments[fragments.length - 1]);
+  }
+}
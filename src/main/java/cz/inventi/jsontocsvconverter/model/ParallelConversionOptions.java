@@ -0,0 +1,48 @@
+package cz.inventi.jsontocsvconverter.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Options of parallel conversion of newline-delimited JSON.
+ * Input lines are split to chunks, which are converted by a pool of worker threads.
+ */
+@Value
+@Builder(toBuilder = true)
+public class ParallelConversionOptions {
+  /**
+   * Number of worker threads
+   */
+  @Builder.Default
+  int threads = Runtime.getRuntime().availableProcessors();
+  /**
+   * Maximal number of chunks read from input and not yet written to output, 0 means twice the number of threads
+   */
+  @Builder.Default
+  int maxChunksInFlight = 0;
+  /**
+   * Number of input lines in one chunk
+   */
+  @Builder.Default
+  int chunkSize = 1000;
+  /**
+   * If true, CSV rows are written in the order of input lines. Otherwise chunks are written as soon as
+   * they are converted, which gives maximal throughput.
+   */
+  @Builder.Default
+  boolean ordered = true;
+
+  /**
+   * @return options with default values
+   */
+  public static ParallelConversionOptions defaults() {
+    return ParallelConversionOptions.builder().build();
+  }
+
+  /**
+   * @return maximal number of chunks read from input and not yet written to output
+   */
+  public int getMaxChunksInFlight() {
+    return maxChunksInFlight > 0 ? maxChunksInFlight : 2 * threads;
+  }
+}
@@ -0,0 +1,119 @@
+package cz.inventi.jsontocsvconverter.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One segment of parsed JSON path - object property (e.g. 'users'), concrete array index (e.g. '[0]')
+ * or any array item ({@link JsonPath#ARRAY_IDENTIFIER_WITH_BRACKETS}).
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class PathSegment {
+  public static final int ANY_INDEX = -1;
+
+  /**
+   * Name of object property, null for array segments
+   */
+  String name;
+  /**
+   * Index of array item or {@link #ANY_INDEX}, is used only for array segments
+   */
+  int index;
+
+  /**
+   * @return true if this segment is object property
+   */
+  public boolean isProperty() {
+    return name != null;
+  }
+
+  /**
+   * @return true if this segment is any array item ({@link JsonPath#ARRAY_IDENTIFIER_WITH_BRACKETS})
+   */
+  public boolean isAnyIndex() {
+    return name == null && index == ANY_INDEX;
+  }
+
+  public static PathSegment property(String name) {
+    return new PathSegment(name, ANY_INDEX);
+  }
+
+  public static PathSegment index(int index) {
+    return new PathSegment(null, index);
+  }
+
+  /**
+   * Parses JSON path to segments (e.g. organizations[*].users[0].id -> organizations, [*], users, [0], id).
+   * Only dot-notation or single quoted bracket-notation (e.g. ['name']) of properties and numeric
+   * or {@link JsonPath#ARRAY_IDENTIFIER} array indexes are supported.
+   *
+   * @param jsonPath json path, optionally starting with '$'
+   * @return parsed segments. Returns null if json path contains unsupported syntax
+   */
+  public static List<PathSegment> parse(String jsonPath) {
+    if (jsonPath == null || jsonPath.isEmpty()) {
+      return null;
+    }
+    List<PathSegment> segments = new ArrayList<>();
+    int position = jsonPath.startsWith("$") ? 1 : 0;
+    int length = jsonPath.length();
+    boolean expectProperty = position == 0;
+
+    while (position < length) {
+      char c = jsonPath.charAt(position);
+      if (c == '[' && jsonPath.startsWith("['", position)) {
+        int end = jsonPath.indexOf("']", position + 2);
+        if (end < 0) {
+          return null;
+        }
+        String name = jsonPath.substring(position + 2, end);
+        if (name.isEmpty() || name.indexOf('\'') >= 0 || name.indexOf('\\') >= 0 || name.indexOf(',') >= 0
+            || name.indexOf('*') >= 0) {
+          return null;
+        }
+        segments.add(property(name));
+        position = end + 2;
+        expectProperty = false;
+      } else if (c == '[') {
+        int end = jsonPath.indexOf(']', position);
+        if (end < 0) {
+          return null;
+        }
+        String index = jsonPath.substring(position + 1, end);
+        if (index.equals(JsonPath.ARRAY_IDENTIFIER)) {
+          segments.add(index(ANY_INDEX));
+        } else if (!index.isEmpty() && index.chars().allMatch(Character::isDigit) && index.length() < 10) {
+          segments.add(index(Integer.parseInt(index)));
+        } else {
+          return null;
+        }
+        position = end + 1;
+        expectProperty = false;
+      } else if (c == '.' && !expectProperty) {
+        position++;
+        expectProperty = true;
+      } else if (expectProperty) {
+        int end = position;
+        while (end < length && jsonPath.charAt(end) != '.' && jsonPath.charAt(end) != '[') {
+          end++;
+        }
+        String name = jsonPath.substring(position, end);
+        if (name.isEmpty() || name.indexOf(']') >= 0 || name.indexOf('*') >= 0 || name.indexOf('\'') >= 0
+            || name.indexOf('(') >= 0) {
+          return null;
+        }
+        segments.add(property(name));
+        position = end;
+        expectProperty = false;
+      } else {
+        return null;
+      }
+    }
+    return expectProperty ? null : segments;
+  }
+}
@@ -22,6 +22,9 @@ public class DefaultCsvDefinition implements CsvDefinition {
   private Collection<Field> fields;
   private Map<String, Field> fieldsByJsonPath;
   private String columnDelimiter;
+  private int bufferSize = DEFAULT_BUFFER_SIZE;
+  private int writeQueueDepth;
+  private String splitPath;
 
   public DefaultCsvDefinition(String name, Collection<Field> fields) {
     this(name, fields, ";");
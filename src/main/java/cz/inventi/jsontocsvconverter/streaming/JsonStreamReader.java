@@ -0,0 +1,434 @@
+package cz.inventi.jsontocsvconverter.streaming;
+
+import com.jayway.jsonpath.InvalidJsonException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Incremental pull reader of JSON input.
+ * <p>
+ * Reads the input through a fixed size buffer, so the memory doesn't depend on the size of the input document.
+ * Only values which are explicitly read (or captured by {@link #nextRawValue()}) are materialized,
+ * all other values are skipped without creating any objects.
+ * <p>
+ * The input can contain more top-level values separated by whitespace, see {@link #peek()}. For newline-delimited
+ * JSON every value has to end its line, which is checked by {@link #endLine()}.
+ */
+public class JsonStreamReader implements Closeable {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Reader reader;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private int position;
+  private int limit;
+  /**
+   * Number of chars consumed before the current buffer content (used for error messages)
+   */
+  private long consumed;
+  /**
+   * When not null, all consumed chars are appended to it (see {@link #nextRawValue()})
+   */
+  private StringBuilder capture;
+  /**
+   * Flags of objects and arrays being read (from the outermost one), true if the object or array already has
+   * some member, so the next member has to be preceded by ','
+   */
+  private boolean[] hasMembers = new boolean[16];
+  private int depth;
+
+  public JsonStreamReader(Reader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * @return type of the next value without consuming it, {@link JsonValueType#END} if there is no other value
+   * @throws IOException when input can't be read
+   */
+  public JsonValueType peek() throws IOException {
+    int c = peekNonWhitespace();
+    switch (c) {
+      case -1:
+        return JsonValueType.END;
+      case '{':
+        return JsonValueType.OBJECT;
+      case '[':
+        return JsonValueType.ARRAY;
+      case '"':
+        return JsonValueType.STRING;
+      case 't':
+      case 'f':
+        return JsonValueType.BOOLEAN;
+      case 'n':
+        return JsonValueType.NULL;
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          return JsonValueType.NUMBER;
+        }
+        throw syntaxError("Unexpected character '" + (char) c + "'");
+    }
+  }
+
+  /**
+   * Consumes whitespace after a top-level value up to the end of its line (including the line separator),
+   * so the next value has to start on another line.
+   *
+   * @throws IOException when input can't be read
+   * @throws InvalidJsonException when another value follows on the same line
+   */
+  public void endLine() throws IOException {
+    while (true) {
+      while (position < limit) {
+        char c = buffer[position];
+        if (c == '\n') {
+          consume();
+          return;
+        }
+        if (c != ' ' && c != '\r' && c != '\t') {
+          throw syntaxError("Expected end of line");
+        }
+        consume();
+      }
+      if (!fill()) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Consumes beginning of the object ('{').
+   *
+   * @throws IOException when input can't be read
+   */
+  public void beginObject() throws IOException {
+    expect('{');
+    enterContainer();
+  }
+
+  /**
+   * Reads name of the next object property, value of the property has to be read or skipped after that.
+   *
+   * @return name of the next property. Returns null when end of the object was reached ('}' is consumed)
+   * @throws IOException when input can't be read
+   */
+  public String nextName() throws IOException {
+    int c = peekNonWhitespace();
+    if (c == '}') {
+      consume();
+      depth--;
+      return null;
+    }
+    c = nextMember(c, '}');
+    if (c != '"') {
+      throw syntaxError("Expected property name");
+    }
+    String name = nextString();
+    expect(':');
+    return name;
+  }
+
+  /**
+   * Consumes beginning of the array ('[').
+   *
+   * @throws IOException when input can't be read
+   */
+  public void beginArray() throws IOException {
+    expect('[');
+    enterContainer();
+  }
+
+  /**
+   * Moves to the next array element, the element has to be read or skipped after that.
+   *
+   * @return true if there is next element. Returns false when end of the array was reached (']' is consumed)
+   * @throws IOException when input can't be read
+   */
+  public boolean nextElement() throws IOException {
+    int c = peekNonWhitespace();
+    if (c == ']') {
+      consume();
+      depth--;
+      return false;
+    }
+    if (c == -1) {
+      throw syntaxError("Unexpected end of input");
+    }
+    if (nextMember(c, ']') == ']') {
+      throw syntaxError("Unexpected end of array");
+    }
+    return true;
+  }
+
+  /**
+   * @return next string value (unescaped)
+   * @throws IOException when input can't be read
+   */
+  public String nextString() throws IOException {
+    expect('"');
+    StringBuilder result = new StringBuilder();
+    while (true) {
+      int start = position;
+      while (position < limit) {
+        char c = buffer[position];
+        if (c == '"' || c == '\\') {
+          break;
+        }
+        position++;
+      }
+      result.append(buffer, start, position - start);
+      if (position == limit) {
+        appendToCapture(start, position);
+        if (!fill()) {
+          throw syntaxError("Unterminated string");
+        }
+        continue;
+      }
+      char c = buffer[position];
+      if (c == '"') {
+        position++;
+        appendToCapture(start, position);
+        return result.toString();
+      }
+      position++;
+      appendToCapture(start, position);
+      result.append(readEscaped());
+    }
+  }
+
+  /**
+   * @return raw text of next number, boolean or null value
+   * @throws IOException when input can't be read
+   */
+  public String nextLiteral() throws IOException {
+    peekNonWhitespace();
+    StringBuilder result = new StringBuilder();
+    while (true) {
+      int start = position;
+      while (position < limit && !isLiteralEnd(buffer[position])) {
+        position++;
+      }
+      result.append(buffer, start, position - start);
+      appendToCapture(start, position);
+      if (position < limit || !fill()) {
+        break;
+      }
+    }
+    if (result.length() == 0) {
+      throw syntaxError("Expected value");
+    }
+    return result.toString();
+  }
+
+  /**
+   * Skips the next value including all nested values.
+   *
+   * @throws IOException when input can't be read
+   */
+  public void skipValue() throws IOException {
+    switch (peek()) {
+      case OBJECT:
+        beginObject();
+        while (nextName() != null) {
+          skipValue();
+        }
+        break;
+      case ARRAY:
+        beginArray();
+        while (nextElement()) {
+          skipValue();
+        }
+        break;
+      case STRING:
+        skipString();
+        break;
+      case END:
+        throw syntaxError("Unexpected end of input");
+      default:
+        nextLiteral();
+    }
+  }
+
+  /**
+   * @return raw JSON text of the next value including all nested values
+   * @throws IOException when input can't be read
+   */
+  public String nextRawValue() throws IOException {
+    peekNonWhitespace();
+    StringBuilder previousCapture = capture;
+    capture = new StringBuilder();
+    try {
+      skipValue();
+      return capture.toString();
+    } finally {
+      if (previousCapture != null) {
+        previousCapture.append(capture);
+      }
+      capture = previousCapture;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  private void skipString() throws IOException {
+    expect('"');
+    while (true) {
+      int start = position;
+      while (position < limit) {
+        char c = buffer[position];
+        if (c == '"' || c == '\\') {
+          break;
+        }
+        position++;
+      }
+      if (position == limit) {
+        appendToCapture(start, position);
+        if (!fill()) {
+          throw syntaxError("Unterminated string");
+        }
+        continue;
+      }
+      char c = buffer[position++];
+      appendToCapture(start, position);
+      if (c == '"') {
+        return;
+      }
+      readEscaped();
+    }
+  }
+
+  private void enterContainer() {
+    if (depth == hasMembers.length) {
+      hasMembers = Arrays.copyOf(hasMembers, depth * 2);
+    }
+    hasMembers[depth++] = false;
+  }
+
+  /**
+   * Consumes ',' separating the next member of the current object or array from the previous one.
+   * The first member mustn't be preceded by ',', every other member has to be.
+   *
+   * @param c   next char
+   * @param end char ending the current object or array
+   * @return next char after the separator
+   */
+  private int nextMember(int c, char end) throws IOException {
+    if (!hasMembers[depth - 1]) {
+      if (c == ',') {
+        throw syntaxError("Unexpected ','");
+      }
+      hasMembers[depth - 1] = true;
+      return c;
+    }
+    if (c != ',') {
+      throw syntaxError("Expected ',' or '" + end + "'");
+    }
+    consume();
+    return peekNonWhitespace();
+  }
+
+  private char readEscaped() throws IOException {
+    char c = nextChar();
+    switch (c) {
+      case '"':
+      case '\\':
+      case '/':
+        return c;
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u':
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = Character.digit(nextChar(), 16);
+          if (digit < 0) {
+            throw syntaxError("Invalid unicode escape sequence");
+          }
+          value = (value << 4) + digit;
+        }
+        return (char) value;
+      default:
+        throw syntaxError("Invalid escape sequence '\\" + c + "'");
+    }
+  }
+
+  private char nextChar() throws IOException {
+    if (position == limit && !fill()) {
+      throw syntaxError("Unexpected end of input");
+    }
+    char c = buffer[position++];
+    appendToCapture(position - 1, position);
+    return c;
+  }
+
+  private void expect(char expected) throws IOException {
+    if (peekNonWhitespace() != expected) {
+      throw syntaxError("Expected '" + expected + "'");
+    }
+    consume();
+  }
+
+  private void consume() {
+    position++;
+    appendToCapture(position - 1, position);
+  }
+
+  /**
+   * Skips whitespace.
+   *
+   * @return next char without consuming it, -1 at the end of the input
+   * @throws IOException when input can't be read
+   */
+  private int peekNonWhitespace() throws IOException {
+    while (true) {
+      while (position < limit) {
+        char c = buffer[position];
+        if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+          return c;
+        }
+        position++;
+      }
+      if (!fill()) {
+        return -1;
+      }
+    }
+  }
+
+  private boolean fill() throws IOException {
+    consumed += limit;
+    position = 0;
+    limit = 0;
+    int read = reader.read(buffer, 0, buffer.length);
+    if (read <= 0) {
+      return false;
+    }
+    limit = read;
+    return true;
+  }
+
+  private void appendToCapture(int start, int end) {
+    if (capture != null) {
+      capture.append(buffer, start, end - start);
+    }
+  }
+
+  private static boolean isLiteralEnd(char c) {
+    return c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\n' || c == '\r' || c == '\t'
+        || c == '"' || c == '{' || c == '[';
+  }
+
+  private InvalidJsonException syntaxError(String message) {
+    return new InvalidJsonException(String.format("%s at position %d.", message, consumed + position));
+  }
+}
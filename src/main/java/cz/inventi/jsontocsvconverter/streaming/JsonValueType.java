@@ -0,0 +1,17 @@
+package cz.inventi.jsontocsvconverter.streaming;
+
+/**
+ * Type of the next JSON value read by {@link JsonStreamReader}.
+ */
+public enum JsonValueType {
+  OBJECT,
+  ARRAY,
+  STRING,
+  NUMBER,
+  BOOLEAN,
+  NULL,
+  /**
+   * There is no other value in the input
+   */
+  END
+}
@@ -0,0 +1,172 @@
+package cz.inventi.jsontocsvconverter.streaming;
+
+import cz.inventi.jsontocsvconverter.model.ConversionPlan;
+import cz.inventi.jsontocsvconverter.model.CsvDefinition;
+import cz.inventi.jsontocsvconverter.model.ParallelConversionOptions;
+import cz.inventi.jsontocsvconverter.utils.ThreadUtils;
+import cz.inventi.jsontocsvconverter.writer.CsvRowWriter;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Converts newline-delimited JSON to CSV on more threads.
+ * <p>
+ * Input is split to chunks on line boundaries. Each chunk is converted to CSV text by a worker thread
+ * and the converted chunks are written to the target by the calling thread - either in the order of input
+ * or as soon as they are converted (see {@link ParallelConversionOptions#isOrdered()}).
+ * The number of chunks held in memory is limited by {@link ParallelConversionOptions#getMaxChunksInFlight()}.
+ */
+@Log4j2
+public class ParallelJsonLinesConverter {
+  private final CsvDefinition csvDefinition;
+  private final ParallelConversionOptions options;
+  private final ConversionPlan plan;
+
+  /**
+   * @param csvDefinition definition of target CSV format
+   * @param options       options of parallel conversion
+   */
+  public ParallelJsonLinesConverter(CsvDefinition csvDefinition, ParallelConversionOptions options) {
+    this(new ConversionPlan(csvDefinition), options);
+  }
+
+  /**
+   * @param plan    compiled definition of target CSV format, has to be streamable
+   * @param options options of parallel conversion
+   */
+  public ParallelJsonLinesConverter(ConversionPlan plan, ParallelConversionOptions options) {
+    if (options.getThreads() < 1 || options.getChunkSize() < 1) {
+      throw new IllegalArgumentException("Number of threads and chunk size have to be positive.");
+    }
+    if (!plan.isStreamable()) {
+      throw new IllegalArgumentException(String.format("CSV definition %s can't be converted by streaming.",
+          plan.getCsvDefinition().getName()));
+    }
+    this.csvDefinition = plan.getCsvDefinition();
+    this.options = options;
+    this.plan = plan;
+  }
+
+  /**
+   * Converts all lines from source and writes them to writer.
+   *
+   * @param source JSON lines
+   * @param writer writer of target CSV
+   * @return number of converted lines
+   * @throws IOException when some I/O problem occurred
+   */
+  public long convert(Reader source, CsvRowWriter writer) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(options.getThreads(), ThreadUtils.createThreadFactory("worker"));
+    try {
+      return options.isOrdered()
+          ? convertOrdered(new BufferedReader(source), writer, executor)
+          : convertUnordered(new BufferedReader(source), writer, executor);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private long convertOrdered(BufferedReader source, CsvRowWriter writer, ExecutorService executor)
+      throws IOException {
+    Deque<Future<String>> chunks = new ArrayDeque<>();
+    long lines = 0;
+    StringBuilder chunk = new StringBuilder();
+    int chunkLines;
+    while ((chunkLines = readChunk(source, chunk)) > 0) {
+      lines += chunkLines;
+      if (chunks.size() == options.getMaxChunksInFlight()) {
+        writer.writeEncodedRows(ThreadUtils.getResult(chunks.poll()));
+      }
+      String chunkText = chunk.toString();
+      chunks.add(executor.submit(() -> convertChunk(chunkText)));
+    }
+    while (!chunks.isEmpty()) {
+      writer.writeEncodedRows(ThreadUtils.getResult(chunks.poll()));
+    }
+    return lines;
+  }
+
+  private long convertUnordered(BufferedReader source, CsvRowWriter writer, ExecutorService executor)
+      throws IOException {
+    CompletionService<String> chunks = new ExecutorCompletionService<>(executor);
+    int chunksInFlight = 0;
+    long lines = 0;
+    StringBuilder chunk = new StringBuilder();
+    int chunkLines;
+    while ((chunkLines = readChunk(source, chunk)) > 0) {
+      lines += chunkLines;
+      if (chunksInFlight == options.getMaxChunksInFlight()) {
+        writer.writeEncodedRows(ThreadUtils.getResult(takeCompleted(chunks)));
+        chunksInFlight--;
+      }
+      String chunkText = chunk.toString();
+      chunks.submit(() -> convertChunk(chunkText));
+      chunksInFlight++;
+    }
+    for (; chunksInFlight > 0; chunksInFlight--) {
+      writer.writeEncodedRows(ThreadUtils.getResult(takeCompleted(chunks)));
+    }
+    return lines;
+  }
+
+  /**
+   * Reads next chunk of not blank lines.
+   *
+   * @param source JSON lines
+   * @param chunk  cleared and filled with read lines
+   * @return number of read lines, 0 at the end of input
+   * @throws IOException when some I/O problem occurred
+   */
+  private int readChunk(BufferedReader source, StringBuilder chunk) throws IOException {
+    chunk.setLength(0);
+    int lines = 0;
+    String line;
+    while (lines < options.getChunkSize() && (line = source.readLine()) != null) {
+      if (!line.isBlank()) {
+        chunk.append(line).append('\n');
+        lines++;
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * @param chunk JSON lines
+   * @return CSV rows converted from chunk
+   * @throws IOException when some problem during conversion occurred
+   */
+  private String convertChunk(String chunk) throws IOException {
+    StringWriter output = new StringWriter(chunk.length());
+    try (CsvRowWriter chunkWriter = new CsvRowWriter(output, csvDefinition)) {
+      StreamingConverter converter = new StreamingConverter(plan, chunkWriter);
+      JsonStreamReader reader = new JsonStreamReader(new StringReader(chunk));
+      while (converter.convertNext(reader)) {
+        reader.endLine();
+        log.trace("JSON line of CSV {} converted.", csvDefinition.getName());
+      }
+    }
+    return output.toString();
+  }
+
+  private Future<String> takeCompleted(CompletionService<String> chunks) throws IOException {
+    try {
+      return chunks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Parallel conversion was interrupted.");
+    }
+  }
+}
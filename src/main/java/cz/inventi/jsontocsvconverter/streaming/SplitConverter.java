@@ -0,0 +1,220 @@
+package cz.inventi.jsontocsvconverter.streaming;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import cz.inventi.jsontocsvconverter.generator.RowIterator;
+import cz.inventi.jsontocsvconverter.model.ConversionPlan;
+import cz.inventi.jsontocsvconverter.model.CsvDefinition;
+import cz.inventi.jsontocsvconverter.writer.CsvRowWriter;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts JSON to CSV item by item of the array defined by {@link CsvDefinition#getSplitPath()} while reading
+ * the JSON input.
+ * <p>
+ * Only properties needed by fields outside of the array are read from objects containing the array, they are
+ * read once for all items. Every item is parsed separately and converted as a document containing the read
+ * properties and the array with the only item, so rows are the same as rows of the whole document and any
+ * JSON path can be used inside of the items. When some property needed by fields outside of the array isn't read
+ * before the array (e.g. it is placed after the array in JSON or it doesn't exist), items are kept until the property
+ * is read or until the object, which should contain it, ends - so a missing property of the document keeps all items
+ * until the end of the document, which is logged as a warning.
+ */
+@Log4j2
+public class SplitConverter {
+  private static final Configuration CONFIGURATION = Configuration.defaultConfiguration();
+
+  private final ConversionPlan plan;
+  private final ConversionPlan.SplitPath splitPath;
+  private final CsvRowWriter writer;
+  /**
+   * Values of the written row, reused for all rows
+   */
+  private final List<String> rowValues = new ArrayList<>();
+  /**
+   * Objects of the current document from the document to the parent of the array
+   */
+  private final List<Map<String, Object>> objects = new ArrayList<>();
+  /**
+   * Captured properties of objects, which weren't read yet
+   */
+  private final List<Set<String>> unreadProperties = new ArrayList<>();
+  /**
+   * Items kept until all captured properties are read or known to be missing
+   */
+  private final List<Object> pendingItems = new ArrayList<>();
+  private long itemCount;
+
+  /**
+   * @param plan   compiled definition of target CSV format with split path, can be shared by more converters
+   * @param writer writer of target CSV
+   */
+  public SplitConverter(ConversionPlan plan, CsvRowWriter writer) {
+    if (plan.getSplitPath() == null) {
+      throw new IllegalArgumentException(String.format("CSV definition %s doesn't define split path.",
+          plan.getCsvDefinition().getName()));
+    }
+    this.plan = plan;
+    this.splitPath = plan.getSplitPath();
+    this.writer = writer;
+  }
+
+  /**
+   * Converts the next top-level JSON value from reader to CSV rows.
+   *
+   * @param reader JSON input
+   * @return false if there is no other value in the input, otherwise true
+   * @throws IOException when some I/O problem occurred
+   */
+  public boolean convertNext(JsonStreamReader reader) throws IOException {
+    if (reader.peek() == JsonValueType.END) {
+      return false;
+    }
+    objects.clear();
+    unreadProperties.clear();
+    pendingItems.clear();
+    itemCount = 0;
+    Object document = read(reader, 0);
+    if (itemCount == 0) {
+      log.trace("JSON doesn't contain any item of split path, convert the document.");
+      writeRows(document);
+    }
+    log.debug("{} items of split path were converted to CSV file {}.", itemCount, plan.getCsvDefinition().getName());
+    return true;
+  }
+
+  /**
+   * Reads the current value of reader on the split path. Items of the array are converted, only captured
+   * properties are read from objects containing the array.
+   *
+   * @param reader JSON input
+   * @param depth  depth of the value on the split path (0 is the document)
+   * @return read value for the document without items
+   */
+  private Object read(JsonStreamReader reader, int depth) throws IOException {
+    JsonValueType type = reader.peek();
+    if (depth == splitPath.getArrayPath().size()) {
+      if (type != JsonValueType.ARRAY) {
+        return parseValue(reader.nextRawValue());
+      }
+      readItems(reader);
+      return new ArrayList<>();
+    }
+    if (type != JsonValueType.OBJECT) {
+      return parseValue(reader.nextRawValue());
+    }
+    Map<String, Object> object = new LinkedHashMap<>();
+    if (depth > 0) {
+      // the object is a part of the document before its properties are read, items are converted meanwhile
+      objects.get(depth - 1).put(splitPath.getArrayPath().get(depth - 1), object);
+    }
+    // an object repeated in JSON (duplicate property) replaces the previous one
+    objects.subList(depth, objects.size()).clear();
+    unreadProperties.subList(depth, unreadProperties.size()).clear();
+    objects.add(object);
+    Set<String> capturedProperties = splitPath.getCapturedProperties(depth);
+    unreadProperties.add(new HashSet<>(capturedProperties));
+    String arrayProperty = splitPath.getArrayPath().get(depth);
+    reader.beginObject();
+    String name;
+    while ((name = reader.nextName()) != null) {
+      if (name.equals(arrayProperty)) {
+        object.put(name, read(reader, depth + 1));
+      } else if (capturedProperties.contains(name)) {
+        object.put(name, parseValue(reader.nextRawValue()));
+        unreadProperties.get(depth).remove(name);
+        convertPendingItems();
+      } else {
+        reader.skipValue();
+      }
+    }
+    // properties, which weren't read until the end of the object, don't exist
+    unreadProperties.get(depth).clear();
+    convertPendingItems();
+    return object;
+  }
+
+  /**
+   * Converts items of the array, items are kept if some captured property isn't read yet.
+   */
+  private void readItems(JsonStreamReader reader) throws IOException {
+    boolean resolved = isResolved();
+    if (!resolved && !unreadProperties.get(0).isEmpty()) {
+      log.warn("Properties {} of JSON aren't placed before the array of split path {} in CSV file {}, all items are "
+              + "kept in memory until they are read or until the end of JSON.", unreadProperties.get(0),
+          plan.getCsvDefinition().getSplitPath(), plan.getCsvDefinition().getName());
+    } else if (!resolved) {
+      log.debug("Some values outside of split path follow the array, items are kept until they are read.");
+    }
+    reader.beginArray();
+    while (reader.nextElement()) {
+      Object item = parseValue(reader.nextRawValue());
+      itemCount++;
+      if (resolved) {
+        convertItem(item);
+      } else {
+        pendingItems.add(item);
+      }
+    }
+  }
+
+  /**
+   * @return true if all captured properties are either read or known to be missing
+   */
+  private boolean isResolved() {
+    return unreadProperties.stream().allMatch(Set::isEmpty);
+  }
+
+  /**
+   * Converts kept items as soon as all captured properties are resolved.
+   */
+  private void convertPendingItems() throws IOException {
+    if (pendingItems.isEmpty() || !isResolved()) {
+      return;
+    }
+    log.trace("Values outside of split path are resolved, convert {} kept items.", pendingItems.size());
+    for (Object item : pendingItems) {
+      convertItem(item);
+    }
+    pendingItems.clear();
+  }
+
+  /**
+   * Converts document with read properties and the array containing only item.
+   */
+  private void convertItem(Object item) throws IOException {
+    List<Object> array = Collections.singletonList(item);
+    if (objects.isEmpty()) {
+      writeRows(array);
+      return;
+    }
+    List<String> arrayPath = splitPath.getArrayPath();
+    objects.get(arrayPath.size() - 1).put(arrayPath.get(arrayPath.size() - 1), array);
+    writeRows(objects.get(0));
+  }
+
+  private void writeRows(Object document) throws IOException {
+    DocumentContext jsonContext = JsonPath.using(CONFIGURATION).parse(document);
+    RowIterator rows = new RowIterator(jsonContext, plan);
+    while (rows.nextRow(rowValues)) {
+      writer.writeRow(rowValues);
+    }
+  }
+
+  /**
+   * Parses raw JSON value the same way as whole documents are parsed.
+   */
+  private Object parseValue(String rawValue) {
+    return CONFIGURATION.jsonProvider().parse(rawValue);
+  }
+}
@@ -0,0 +1,347 @@
+package cz.inventi.jsontocsvconverter.streaming;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import cz.inventi.jsontocsvconverter.mapper.ListSink;
+import cz.inventi.jsontocsvconverter.model.ConversionPlan;
+import cz.inventi.jsontocsvconverter.model.CsvDefinition;
+import cz.inventi.jsontocsvconverter.utils.RowUtils;
+import cz.inventi.jsontocsvconverter.writer.CsvRowWriter;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts JSON to CSV while reading the JSON input, without reading the whole document to memory.
+ * <p>
+ * Values of fields are captured to "frames" - one frame for the document and one frame for each item
+ * of the arrays defined by the fields. CSV row is written as soon as the item of the most nested array is complete
+ * and values of all its ancestor frames are known. When some value of the ancestor frame isn't known yet
+ * (e.g. the property is placed after the nested array in JSON), rows are kept until the ancestor frame is complete.
+ * So the memory is bounded by the depth of nesting, not by the size of the document.
+ */
+@Log4j2
+public class StreamingConverter {
+  private static final JsonProvider JSON_PROVIDER = Configuration.defaultConfiguration().jsonProvider();
+
+  private final ConversionPlan plan;
+  private final CsvRowWriter writer;
+  private final Frame[] currentFrames;
+  private final Frame[] emptyFrames;
+  private final Deque<Frame[]> pendingRows = new ArrayDeque<>();
+  /**
+   * Values of the written row, reused for all rows
+   */
+  private final List<String> rowValues = new ArrayList<>();
+  private final ListSink sink = new ListSink();
+
+  /**
+   * @param csvDefinition definition of target CSV format
+   * @param writer        writer of target CSV
+   */
+  public StreamingConverter(CsvDefinition csvDefinition, CsvRowWriter writer) {
+    this(new ConversionPlan(csvDefinition), writer);
+  }
+
+  /**
+   * @param plan   compiled definition of target CSV format, can be shared by more converters
+   * @param writer writer of target CSV
+   */
+  public StreamingConverter(ConversionPlan plan, CsvRowWriter writer) {
+    if (!plan.isStreamable()) {
+      throw new IllegalArgumentException(String.format("CSV definition %s can't be converted by streaming.",
+          plan.getCsvDefinition().getName()));
+    }
+    this.plan = plan;
+    this.writer = writer;
+    this.currentFrames = new Frame[plan.getLevels().size()];
+    this.emptyFrames = new Frame[plan.getLevels().size()];
+    for (int depth = 0; depth < emptyFrames.length; depth++) {
+      emptyFrames[depth] = new Frame(plan.getLevels().get(depth));
+      emptyFrames[depth].complete = true;
+    }
+  }
+
+  /**
+   * @param csvDefinition definition of target CSV format
+   * @return true if all paths of csvDefinition can be converted by streaming
+   */
+  public static boolean supports(CsvDefinition csvDefinition) {
+    return new ConversionPlan(csvDefinition).isStreamable();
+  }
+
+  /**
+   * Converts the next top-level JSON value from reader to CSV rows.
+   *
+   * @param reader JSON input
+   * @return false if there is no other value in the input, otherwise true
+   * @throws IOException when some I/O problem occurred
+   */
+  public boolean convertNext(JsonStreamReader reader) throws IOException {
+    if (reader.peek() == JsonValueType.END) {
+      return false;
+    }
+    if (!plan.isProducingRows() || !plan.isRowCompletable()) {
+      // the same as conversion of the parsed document, which gives no row for such plan
+      reader.skipValue();
+      return true;
+    }
+    Frame root = new Frame(plan.getLevels().get(0));
+    currentFrames[0] = root;
+    walk(reader, root.level.getRoot(), root);
+    completeFrame(root);
+    return true;
+  }
+
+  /**
+   * Reads the current value of reader and captures values of all fields defined by node and its descendants.
+   */
+  private void walk(JsonStreamReader reader, ConversionPlan.MatchNode node, Frame frame) throws IOException {
+    if (node.needsMaterialization()) {
+      walk(parseValue(reader.nextRawValue()), node, frame);
+      return;
+    }
+    JsonValueType type = reader.peek();
+    if (!node.getColumns().isEmpty()) {
+      frame.setValue(node.getColumns(), readValue(reader, type));
+    } else if (node.isNextLevel() && type == JsonValueType.ARRAY) {
+      reader.beginArray();
+      while (reader.nextElement()) {
+        Frame child = startChildFrame(frame);
+        walk(reader, child.level.getRoot(), child);
+        completeFrame(child);
+      }
+    } else if (type == JsonValueType.OBJECT && (node.isNextLevel() || !node.getProperties().isEmpty())) {
+      // object on the position of the next level array has one item (null) for every property,
+      // the same as the size of the object by 'length()' in the parsed document
+      Set<String> names = node.isNextLevel() ? new HashSet<>() : null;
+      reader.beginObject();
+      String name;
+      while ((name = reader.nextName()) != null) {
+        ConversionPlan.MatchNode child = node.getProperties().get(name);
+        if (child != null) {
+          walk(reader, child, frame);
+        } else {
+          reader.skipValue();
+        }
+        if (names != null && names.add(name)) {
+          completeFrame(startChildFrame(frame));
+        }
+      }
+    } else if (type == JsonValueType.ARRAY && !node.getIndexes().isEmpty()) {
+      reader.beginArray();
+      for (int index = 0; reader.nextElement(); index++) {
+        ConversionPlan.MatchNode child = node.getIndexes().get(index);
+        if (child != null) {
+          walk(reader, child, frame);
+        } else {
+          reader.skipValue();
+        }
+      }
+    } else {
+      reader.skipValue();
+    }
+  }
+
+  /**
+   * Captures values of all fields defined by node and its descendants from already parsed value.
+   */
+  private void walk(Object value, ConversionPlan.MatchNode node, Frame frame) throws IOException {
+    if (!node.getColumns().isEmpty()) {
+      frame.setValue(node.getColumns(), value);
+    }
+    if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      for (Map.Entry<String, ConversionPlan.MatchNode> child : node.getProperties().entrySet()) {
+        if (map.containsKey(child.getKey())) {
+          walk(map.get(child.getKey()), child.getValue(), frame);
+        }
+      }
+      if (node.isNextLevel()) {
+        for (int i = 0; i < map.size(); i++) {
+          completeFrame(startChildFrame(frame));
+        }
+      }
+    } else if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      for (Map.Entry<Integer, ConversionPlan.MatchNode> child : node.getIndexes().entrySet()) {
+        if (child.getKey() < list.size()) {
+          walk(list.get(child.getKey()), child.getValue(), frame);
+        }
+      }
+      if (node.isNextLevel()) {
+        for (Object item : list) {
+          Frame childFrame = startChildFrame(frame);
+          walk(item, childFrame.level.getRoot(), childFrame);
+          completeFrame(childFrame);
+        }
+      }
+    }
+  }
+
+  private Frame startChildFrame(Frame parent) {
+    parent.hasChildren = true;
+    Frame child = new Frame(plan.getLevels().get(parent.level.getDepth() + 1));
+    currentFrames[child.level.getDepth()] = child;
+    return child;
+  }
+
+  /**
+   * Marks frame as complete. If the frame is the item of the most nested array (or there are no nested items),
+   * CSV row for this frame is added to pending rows. Then all rows with already known values are written.
+   */
+  private void completeFrame(Frame frame) throws IOException {
+    frame.complete = true;
+    int depth = frame.level.getDepth();
+    if (depth == plan.getDeepestLevel() || !frame.hasChildren) {
+      log.trace("Item on level {} is complete, add CSV row.", depth);
+      Frame[] row = Arrays.copyOf(currentFrames, currentFrames.length);
+      System.arraycopy(emptyFrames, depth + 1, row, depth + 1, row.length - depth - 1);
+      pendingRows.add(row);
+    }
+    writeResolvedRows();
+  }
+
+  private void writeResolvedRows() throws IOException {
+    while (!pendingRows.isEmpty() && isResolved(pendingRows.peek())) {
+      writer.writeRow(obtainRowValues(pendingRows.poll()));
+    }
+  }
+
+  private boolean isResolved(Frame[] row) {
+    for (Frame frame : row) {
+      if (!frame.isResolved()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param row frames of all levels
+   * @return values for CSV row (the list is reused for all rows). Returns empty list, when row should be ignored
+   * (if some required cell value doesn't exist)
+   */
+  private List<String> obtainRowValues(Frame[] row) {
+    rowValues.clear();
+    for (ConversionPlan.Column column : plan.getColumns()) {
+      if (!row[column.getLevel()].addValues(column, sink, rowValues)) {
+        rowValues.clear();
+        break;
+      }
+    }
+    return rowValues;
+  }
+
+  /**
+   * @return raw value of the current value of reader (the same as the value of parsed document),
+   * null for JSON null
+   */
+  private Object readValue(JsonStreamReader reader, JsonValueType type) throws IOException {
+    switch (type) {
+      case STRING:
+        return reader.nextString();
+      case NUMBER:
+        return parseValue(reader.nextLiteral());
+      case BOOLEAN:
+      case NULL:
+        String literal = reader.nextLiteral();
+        if (!"true".equals(literal) && !"false".equals(literal) && !"null".equals(literal)) {
+          throw new InvalidJsonException(String.format("Unexpected value '%s'.", literal));
+        }
+        return type == JsonValueType.NULL ? null : Boolean.valueOf(literal);
+      default:
+        return parseValue(reader.nextRawValue());
+    }
+  }
+
+  /**
+   * Parses raw JSON value the same way as whole documents are parsed, so the string representation of values
+   * is the same for both streaming and not streaming conversion.
+   */
+  private Object parseValue(String rawValue) {
+    return JSON_PROVIDER.parse(rawValue);
+  }
+
+  /**
+   * Captured values of one level item.
+   */
+  private static class Frame {
+    private final ConversionPlan.Level level;
+    private final Object[] values;
+    private final boolean[] captured;
+    /**
+     * Values converted by mappers of columns, shared by all rows of this frame (null if the row is skipped)
+     */
+    private final List<List<String>> convertedValues;
+    private final boolean[] converted;
+    private int capturedCount;
+    private boolean hasChildren;
+    private boolean complete;
+
+    private Frame(ConversionPlan.Level level) {
+      this.level = level;
+      this.values = new Object[level.getColumnCount()];
+      this.captured = new boolean[level.getColumnCount()];
+      this.convertedValues = new ArrayList<>(Collections.nCopies(level.getColumnCount(), null));
+      this.converted = new boolean[level.getColumnCount()];
+    }
+
+    private void setValue(List<Integer> positions, Object value) {
+      for (int position : positions) {
+        values[position] = value;
+        converted[position] = false;
+        if (!captured[position]) {
+          captured[position] = true;
+          capturedCount++;
+        }
+      }
+    }
+
+    /**
+     * Adds values of column to values of the row. Mapper of column is applied to its value only for the first row
+     * of this frame (for every row if the mapper isn't pure).
+     *
+     * @param column    column of this frame
+     * @param sink      reusable sink
+     * @param rowValues values of the row
+     * @return false if the whole row should be skipped (value of required field doesn't exist)
+     */
+    private boolean addValues(ConversionPlan.Column column, ListSink sink, List<String> rowValues) {
+      int position = column.getLevelPosition();
+      if (column.getMapper() == null || !column.getField().isCustomMapperPure()) {
+        return RowUtils.addFieldValues(column.getField(), column.getMapper(), values[position], sink.to(rowValues));
+      }
+      if (!converted[position]) {
+        List<String> mapped = new ArrayList<>();
+        boolean added = RowUtils.addFieldValues(column.getField(), column.getMapper(), values[position],
+            sink.to(mapped));
+        convertedValues.set(position, added ? mapped : null);
+        converted[position] = true;
+      }
+      List<String> mapped = convertedValues.get(position);
+      if (mapped == null) {
+        return false;
+      }
+      rowValues.addAll(mapped);
+      return true;
+    }
+
+    /**
+     * @return true if all values of this frame are known
+     */
+    private boolean isResolved() {
+      return complete || capturedCount == values.length;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package cz.inventi.jsontocsvconverter.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Reader decoding UTF-8 bytes of {@link ByteBuffer}s (bytes between their position and limit) without copying them
+ * to a {@link String}. Bytes are decoded in chunks, malformed bytes are replaced the same way as by
+ * {@link java.io.InputStreamReader}. More buffers are read as one sequence of bytes (e.g. chunks of a mapped file),
+ * a character may be split between two buffers. Positions of the source buffers aren't changed.
+ * <p>
+ * Unlike {@link java.io.InputStreamReader}, the reader isn't synchronized, so reading of single characters
+ * (e.g. by JSON parser) is cheap. The reader isn't thread-safe.
+ */
+public class ByteBufferReader extends Reader {
+  private static final int CHUNK_SIZE = 8 * 1024;
+  /**
+   * Maximal number of bytes of the following buffer needed to complete a character split between buffers
+   */
+  private static final int MAX_SPLIT_BYTES = 3;
+
+  private final List<ByteBuffer> sources;
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private final CharBuffer chunk = CharBuffer.allocate(CHUNK_SIZE);
+  private final char[] chars = chunk.array();
+  /**
+   * Index of the next source buffer
+   */
+  private int nextSource;
+  private ByteBuffer input;
+  /**
+   * Source buffer, which continues after the bytes joined to the split character, null if there is no such buffer
+   */
+  private ByteBuffer resumed;
+  private int position;
+  private int limit;
+  private boolean endOfInput;
+
+  /**
+   * @param source UTF-8 bytes
+   */
+  public ByteBufferReader(ByteBuffer source) {
+    this(List.of(source));
+  }
+
+  /**
+   * @param sources UTF-8 bytes split to more buffers
+   */
+  public ByteBufferReader(List<ByteBuffer> sources) {
+    this.sources = sources;
+    this.input = sources.isEmpty() ? ByteBuffer.allocate(0) : sources.get(0).duplicate();
+    this.nextSource = 1;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (position == limit && !decodeChunk()) {
+      return -1;
+    }
+    return chars[position++];
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (position == limit && !decodeChunk()) {
+      return -1;
+    }
+    int count = Math.min(len, limit - position);
+    System.arraycopy(chars, position, cbuf, off, count);
+    position += count;
+    return count;
+  }
+
+  /**
+   * Decodes the next chunk of characters.
+   *
+   * @return false if all bytes were already decoded
+   */
+  private boolean decodeChunk() {
+    chunk.clear();
+    while (chunk.position() == 0 && !endOfInput) {
+      boolean lastInput = resumed == null && nextSource >= sources.size();
+      CoderResult result = decoder.decode(input, chunk, lastInput);
+      if (result.isUnderflow()) {
+        if (lastInput) {
+          decoder.flush(chunk);
+          endOfInput = true;
+        } else {
+          nextInput();
+        }
+      }
+    }
+    position = 0;
+    limit = chunk.position();
+    return limit > 0;
+  }
+
+  /**
+   * Continues with the next source buffer. If the current input ends by an incomplete character, its bytes are
+   * joined with the first bytes of the next buffer, the rest of the buffer is decoded after the joined bytes.
+   */
+  private void nextInput() {
+    if (resumed != null) {
+      // the rest of joined bytes is the beginning of an incomplete character of the resumed buffer
+      resumed.position(resumed.position() - input.remaining());
+      input = resumed;
+      resumed = null;
+      return;
+    }
+    ByteBuffer following = sources.get(nextSource++).duplicate();
+    if (!input.hasRemaining()) {
+      input = following;
+      return;
+    }
+    ByteBuffer joined = ByteBuffer.allocate(input.remaining() + MAX_SPLIT_BYTES);
+    joined.put(input);
+    while (joined.hasRemaining() && following.hasRemaining()) {
+      joined.put(following.get());
+    }
+    joined.flip();
+    input = joined;
+    resumed = following.hasRemaining() ? following : null;
+  }
+
+  @Override
+  public void close() {
+    endOfInput = true;
+    position = 0;
+    limit = 0;
+  }
+}
@@ -1,26 +1,36 @@
 package cz.inventi.jsontocsvconverter.utils;
 
 import cz.inventi.jsontocsvconverter.model.CsvDefinition;
-import cz.inventi.jsontocsvconverter.model.Field;
 import cz.inventi.jsontocsvconverter.model.csvdefinitions.FileCsvDefinition;
 import cz.inventi.jsontocsvconverter.model.csvdefinitions.OutputStreamCsvDefinition;
+import cz.inventi.jsontocsvconverter.writer.AsyncWriter;
+import cz.inventi.jsontocsvconverter.writer.CsvRowWriter;
+import cz.inventi.jsontocsvconverter.writer.FileChannelWriter;
 import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.output.ProxyOutputStream;
 import org.supercsv.io.CsvListWriter;
 import org.supercsv.io.ICsvListWriter;
-import org.supercsv.prefs.CsvPreference;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Contains utils methods for work with CSV files.
  */
 @Log4j2
 public class CsvUtils {
+  /**
+   * Charsets by encoding names of CSV definitions
+   */
+  private static final Map<String, Charset> CHARSETS = new ConcurrentHashMap<>();
 
   /**
    * Creates CSV file based on csvDefinition and writes header.
@@ -29,15 +39,16 @@ public class CsvUtils {
    * @throws IOException when some problem during writing to CSV occurred
    */
   public static void createCsvFile(CsvDefinition csvDefinition) throws IOException {
-    try (ICsvListWriter writer = getWriter(csvDefinition)) {
-      String[] header = csvDefinition.getFields().stream().map(Field::getName).toArray(String[]::new);
-      writer.writeHeader(header);
+    try (CsvRowWriter writer = openRowWriter(csvDefinition)) {
+      writer.writeHeader();
     }
     log.trace("CSV file {} was created (now only with header)", csvDefinition.getName());
   }
 
   /**
    * Writes row as rowValues separated by columnDelimiter to CSV file defined by filename.
+   * <p>
+   * Opens and closes the target for each call, use {@link #openRowWriter(CsvDefinition)} to write more rows.
    *
    * @param rowValues values of new row to be written
    * @throws IOException when some I/O problem occurred
@@ -48,32 +59,95 @@ public class CsvUtils {
       return;
     }
 
-    try (ICsvListWriter writer = getWriter(csvDefinition)) {
-      writer.write(rowValues);
+    try (CsvRowWriter writer = openRowWriter(csvDefinition)) {
+      writer.writeRow(rowValues);
     }
   }
 
+  /**
+   * Opens buffered row writer for the whole conversion. Closing the returned writer never closes
+   * the output stream of {@link OutputStreamCsvDefinition}, it is only flushed.
+   * Rows of {@link FileCsvDefinition} are encoded directly to the byte buffer of {@link FileChannelWriter}
+   * ({@link CsvDefinition#getBufferSize()} bytes).
+   * If {@link CsvDefinition#getWriteQueueDepth()} is positive, the target is written by {@link AsyncWriter}
+   * on a dedicated thread.
+   *
+   * @param csvDefinition definition of target CSV format
+   * @return CSV row writer created based on csvDefinition
+   * @throws IOException when some problem during opening of CSV occurred
+   */
+  public static CsvRowWriter openRowWriter(CsvDefinition csvDefinition) throws IOException {
+    Writer writer;
+    if (csvDefinition instanceof FileCsvDefinition) {
+      writer = FileChannelWriter.open(((FileCsvDefinition) csvDefinition).getFileName(), getCharset(csvDefinition),
+          csvDefinition.getBufferSize());
+    } else if (csvDefinition.getWriteQueueDepth() > 0) {
+      // batches of the asynchronous writer are already buffered
+      writer = openTargetWriter(csvDefinition);
+    } else {
+      writer = new BufferedWriter(openTargetWriter(csvDefinition), csvDefinition.getBufferSize());
+    }
+    if (csvDefinition.getWriteQueueDepth() > 0) {
+      log.debug("Rows of CSV file {} are written by a writer thread.", csvDefinition.getName());
+      writer = new AsyncWriter(writer, csvDefinition.getWriteQueueDepth(), csvDefinition.getBufferSize(),
+          "csv-writer-" + csvDefinition.getName());
+    }
+    return new CsvRowWriter(writer, csvDefinition);
+  }
+
+  /**
+   * @param csvDefinition definition of target CSV format
+   * @return charset of encoding of csvDefinition, charsets are looked up only once for every encoding
+   */
+  public static Charset getCharset(CsvDefinition csvDefinition) {
+    return CHARSETS.computeIfAbsent(csvDefinition.getEncoding(), Charset::forName);
+  }
+
   /**
    * @param csvDefinition definition of target CSV format
    * @return CSV writer created based on csvDefinition
    * @throws IOException when some problem during writing to CSV occurred
+   * @deprecated closing of the returned writer closes the output stream of {@link OutputStreamCsvDefinition},
+   * use {@link #openRowWriter(CsvDefinition)} instead
    */
+  @Deprecated
   public static ICsvListWriter getWriter(CsvDefinition csvDefinition) throws IOException {
-    char encapsulationChar = csvDefinition.getTextEncapsulator().charAt(0);
-    char delimiterChar = csvDefinition.getColumnDelimiter().charAt(0);
-    String recordDelimiter = csvDefinition.getRecordDelimiter();
-
     Writer writer = null;
     if (csvDefinition instanceof OutputStreamCsvDefinition) {
       writer = new OutputStreamWriter(((OutputStreamCsvDefinition) csvDefinition).getOutputStream(),
-          Charset.forName(csvDefinition.getEncoding()));
+          getCharset(csvDefinition));
     } else if (csvDefinition instanceof FileCsvDefinition) {
-      writer = new FileWriter(((FileCsvDefinition) csvDefinition).getFileName(),
-          Charset.forName(csvDefinition.getEncoding()), true);
+      writer = new FileWriter(((FileCsvDefinition) csvDefinition).getFileName(), getCharset(csvDefinition), true);
+    }
+    return new CsvListWriter(writer, CsvRowWriter.createPreference(csvDefinition));
+  }
+
+  /**
+   * @param csvDefinition definition of target CSV format
+   * @return not buffered writer to the target of csvDefinition
+   * @throws IOException when target can't be opened
+   */
+  private static Writer openTargetWriter(CsvDefinition csvDefinition) throws IOException {
+    if (csvDefinition instanceof OutputStreamCsvDefinition) {
+      return new OutputStreamWriter(
+          new FlushOnCloseOutputStream(((OutputStreamCsvDefinition) csvDefinition).getOutputStream()),
+          getCharset(csvDefinition));
+    }
+    throw new IllegalArgumentException(String.format("Unsupported CSV definition type %s.",
+        csvDefinition.getClass().getName()));
+  }
+
+  /**
+   * Output stream, which only flushes the target stream when it is closed, the target stays open.
+   */
+  private static class FlushOnCloseOutputStream extends ProxyOutputStream {
+    private FlushOnCloseOutputStream(OutputStream target) {
+      super(target);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
     }
-    return new CsvListWriter(
-        writer,
-        new CsvPreference.Builder(encapsulationChar, delimiterChar, recordDelimiter).build()
-    );
   }
 }
@@ -2,12 +2,21 @@ package cz.inventi.jsontocsvconverter.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Contains methods for work with files and directories
  */
 public class FileUtils {
+  /**
+   * Maximal size of one mapped part of file
+   */
+  public static final int MAX_MAPPED_CHUNK_SIZE = 1024 * 1024 * 1024;
 
   /**
    * Reads file with filename.
@@ -31,6 +40,29 @@ public class FileUtils {
     return org.apache.commons.io.FileUtils.readFileToString(file, StandardCharsets.UTF_8);
   }
 
+  /**
+   * Maps file to memory (read only). Files larger than {@link #MAX_MAPPED_CHUNK_SIZE} are mapped in more parts,
+   * because one buffer can't be larger than 2 GB. The file isn't copied to heap, its content is read
+   * from the page cache when the buffers are read. The mapping is released when the buffers are garbage collected.
+   *
+   * @param file file
+   * @return mapped parts of file in the order of their position in file
+   * @throws IOException when file cannot be mapped
+   */
+  public static List<ByteBuffer> mapFile(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      List<ByteBuffer> chunks = new ArrayList<>((int) (size / MAX_MAPPED_CHUNK_SIZE) + 1);
+      long position = 0;
+      do {
+        long chunkSize = Math.min(size - position, MAX_MAPPED_CHUNK_SIZE);
+        chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, position, chunkSize));
+        position += chunkSize;
+      } while (position < size);
+      return chunks;
+    }
+  }
+
   /**
    * Checks if target directory exists. If not, creates it.
    *
@@ -2,14 +2,28 @@ package cz.inventi.jsontocsvconverter.utils;
 
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.InvalidJsonException;
 import com.jayway.jsonpath.PathNotFoundException;
+import com.jayway.jsonpath.spi.cache.Cache;
+import com.jayway.jsonpath.spi.cache.CacheProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.jayway.jsonpath.spi.json.JsonSmartJsonProvider;
+import cz.inventi.jsontocsvconverter.model.PathSegment;
 import lombok.extern.log4j.Log4j2;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
 
+import net.minidev.json.JSONValue;
+import net.minidev.json.parser.JSONParser;
+import net.minidev.json.parser.ParseException;
 import org.apache.commons.io.IOUtils;
 
 /**
@@ -17,27 +31,28 @@ import org.apache.commons.io.IOUtils;
  */
 @Log4j2
 public class JsonUtils {
-
   /**
-   * Parses JSON file.
+   * Parses JSON file. The file is mapped to memory and parsed from the mapped bytes
+   * (see {@link FileUtils#mapFile(File)}).
    *
    * @param filename JSON filename
    * @return parsed json file (as DocumentContext)
    * @throws IOException when file can't be read
    */
   public static DocumentContext parseJsonFile(String filename) throws IOException {
-    return com.jayway.jsonpath.JsonPath.using(Configuration.defaultConfiguration()).parse(FileUtils.readFile(filename));
+    return parseJsonFile(new File(filename));
   }
 
   /**
-   * Parses JSON file.
+   * Parses JSON file. The file is mapped to memory and parsed from the mapped bytes
+   * (see {@link FileUtils#mapFile(File)}).
    *
    * @param file JSON file
    * @return parsed json file (as DocumentContext)
    * @throws IOException when file can't be read
    */
   public static DocumentContext parseJsonFile(File file) throws IOException {
-    return com.jayway.jsonpath.JsonPath.using(Configuration.defaultConfiguration()).parse(FileUtils.readFile(file));
+    return parseJson(FileUtils.mapFile(file));
   }
 
   /**
@@ -52,18 +67,186 @@ public class JsonUtils {
         IOUtils.toString(input, StandardCharsets.UTF_8));
   }
 
+  /**
+   * Parses JSON.
+   *
+   * @param json JSON data
+   * @return parsed json (as DocumentContext)
+   */
+  public static DocumentContext parseJson(String json) {
+    return com.jayway.jsonpath.JsonPath.using(Configuration.defaultConfiguration()).parse(json);
+  }
+
+  /**
+   * Parses UTF-8 JSON bytes (between position and limit of the buffer) without decoding them to a {@link String}.
+   * Bytes are parsed by the same parser as JSON strings, the position of the buffer isn't changed.
+   *
+   * @param json JSON data
+   * @return parsed json (as DocumentContext)
+   */
+  public static DocumentContext parseJson(ByteBuffer json) {
+    return parseJson(List.of(json));
+  }
+
+  /**
+   * Parses UTF-8 JSON bytes split to more buffers, which are read as one sequence of bytes
+   * (see {@link #parseJson(ByteBuffer)}).
+   *
+   * @param json JSON data
+   * @return parsed json (as DocumentContext)
+   */
+  public static DocumentContext parseJson(List<ByteBuffer> json) {
+    if (json.stream().noneMatch(ByteBuffer::hasRemaining)) {
+      throw new IllegalArgumentException("json can not be empty");
+    }
+    Configuration configuration = Configuration.defaultConfiguration();
+    return com.jayway.jsonpath.JsonPath.using(configuration).parse(parse(json, configuration.jsonProvider()));
+  }
+
+  /**
+   * Parses JSON bytes by json-smart parser directly from {@link ByteBufferReader} (with the mode and mapper
+   * of the default {@link JsonSmartJsonProvider}), other JSON providers parse decoded string.
+   */
+  private static Object parse(List<ByteBuffer> json, JsonProvider provider) {
+    try (ByteBufferReader reader = new ByteBufferReader(json)) {
+      if (provider.getClass() != JsonSmartJsonProvider.class) {
+        return provider.parse(IOUtils.toString(reader));
+      }
+      return new JSONParser(JSONParser.MODE_PERMISSIVE).parse(reader, JSONValue.defaultReader.DEFAULT_ORDERED);
+    } catch (ParseException e) {
+      throw new InvalidJsonException(e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   /**
    * @param arrayPathString array path (e.g. organizations[0].users)
    * @param context JSON context
    * @return size of array defined by arrayPathString
    */
   public static int getArraySize(String arrayPathString, DocumentContext context) {
-    try {
-      return context.read(String.format("%s.length()", arrayPathString));
-    } catch (PathNotFoundException | NullPointerException e) {
+    List<PathSegment> segments = parseDefinite(arrayPathString);
+    if (segments != null) {
+      return getSize(getValue(context.json(), segments, segments.size(), null));
+    }
+    Object size = read(arrayPathString + ".length()", context);
+    if (size == null) {
       log.trace("No data was found for JSON path {}.", arrayPathString);
       return 0;
     }
+    return (Integer) size;
   }
 
+  /**
+   * Reads value from JSON context. Definite paths, which can be parsed to {@link PathSegment}s (properties and concrete
+   * indexes), are found directly in parsed JSON, so missing values are detected without exceptions. Other paths are
+   * evaluated by json-path, which throws {@link PathNotFoundException} for missing definite paths (e.g. with negative
+   * indexes), such paths are returned as null. Indefinite paths return empty list when nothing is matched.
+   *
+   * @param jsonPath JSON path
+   * @param context  JSON context
+   * @return value defined by jsonPath. Returns null if the path doesn't exist or the value is null
+   */
+  public static Object read(String jsonPath, DocumentContext context) {
+    List<PathSegment> segments = parseDefinite(jsonPath);
+    if (segments != null) {
+      return getValue(context.json(), segments, segments.size(), null);
+    }
+    Object json = context.json();
+    try {
+      return compile(jsonPath).read(json, context.configuration());
+    } catch (PathNotFoundException e) {
+      log.trace("No data was found for JSON path {}.", jsonPath);
+      return null;
+    }
+  }
+
+  /**
+   * @param jsonPath JSON path
+   * @return segments of jsonPath, null if it isn't definite path of properties and concrete indexes
+   */
+  private static List<PathSegment> parseDefinite(String jsonPath) {
+    List<PathSegment> segments = PathSegment.parse(jsonPath);
+    if (segments == null || segments.stream().anyMatch(PathSegment::isAnyIndex)) {
+      return null;
+    }
+    return segments;
+  }
+
+  /**
+   * @param jsonPath JSON path
+   * @return compiled JSON path, compiled paths are cached by the cache of json-path
+   */
+  private static com.jayway.jsonpath.JsonPath compile(String jsonPath) {
+    Cache cache = CacheProvider.getCache();
+    com.jayway.jsonpath.JsonPath path = cache.get(jsonPath);
+    if (path == null) {
+      path = com.jayway.jsonpath.JsonPath.compile(jsonPath);
+      cache.put(jsonPath, path);
+    }
+    return path;
+  }
+
+  /**
+   * Finds value in parsed JSON by path segments. Objects are walked as {@link Map}s and arrays as {@link List}s,
+   * so no JSON path is compiled or evaluated.
+   *
+   * @param json         parsed JSON
+   * @param segments     path segments
+   * @param segmentCount number of segments from the beginning, which should be walked
+   * @param indexes      indexes for {@link PathSegment#isAnyIndex()} segments (by the order of segment)
+   * @return found value. Returns null if the path doesn't exist or the value is null
+   */
+  public static Object getValue(Object json, List<PathSegment> segments, int segmentCount, IntUnaryOperator indexes) {
+    return getValue(json, segments, 0, segmentCount, indexes);
+  }
+
+  /**
+   * Finds value in parsed JSON by part of path segments (e.g. path relative to some array item).
+   *
+   * @param json         parsed JSON (or its part, where the walked segments start)
+   * @param segments     path segments
+   * @param fromSegment  position of the first walked segment
+   * @param toSegment    position after the last walked segment
+   * @param indexes      indexes for {@link PathSegment#isAnyIndex()} segments (by the order of segment in walked part)
+   * @return found value. Returns null if the path doesn't exist or the value is null
+   */
+  public static Object getValue(Object json, List<PathSegment> segments, int fromSegment, int toSegment,
+                                IntUnaryOperator indexes) {
+    Object value = json;
+    for (int i = fromSegment, slot = 0; i < toSegment && value != null; i++) {
+      PathSegment segment = segments.get(i);
+      if (segment.isProperty()) {
+        value = value instanceof Map ? ((Map<?, ?>) value).get(segment.getName()) : null;
+      } else {
+        int index = segment.isAnyIndex() ? indexes.applyAsInt(slot++) : segment.getIndex();
+        value = getItem(value, index);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @param array parsed JSON array
+   * @param index index of item
+   * @return item of array, null if the value isn't array or it doesn't contain item with index
+   */
+  public static Object getItem(Object array, int index) {
+    return array instanceof List && index < ((List<?>) array).size() ? ((List<?>) array).get(index) : null;
+  }
+
+  /**
+   * @param value parsed JSON value
+   * @return size of value the same way as 'length()' function of JSON path - number of items of array,
+   * number of properties of object, 0 for any other value
+   */
+  public static int getSize(Object value) {
+    if (value instanceof List) {
+      return ((List<?>) value).size();
+    } else if (value instanceof Map) {
+      return ((Map<?, ?>) value).size();
+    }
+    return 0;
+  }
 }
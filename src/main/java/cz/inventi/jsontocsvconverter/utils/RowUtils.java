@@ -0,0 +1,62 @@
+package cz.inventi.jsontocsvconverter.utils;
+
+import cz.inventi.jsontocsvconverter.mapper.ListSink;
+import cz.inventi.jsontocsvconverter.mapper.ValueMapper;
+import cz.inventi.jsontocsvconverter.model.Field;
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.List;
+
+/**
+ * Contains utils methods for construction of CSV rows.
+ */
+@Log4j2
+public class RowUtils {
+
+  /**
+   * Adds values of one field to CSV row values. Custom mapper of the field is applied (if defined).
+   *
+   * @param field         definition of CSV field
+   * @param propertyValue value of the property from JSON, null if the property doesn't exist
+   * @param values        values of CSV row
+   * @return false if the whole row should be skipped (value of required field doesn't exist), otherwise true
+   */
+  public static boolean addFieldValues(Field field, String propertyValue, List<String> values) {
+    ValueMapper mapper = field.getValueMapper();
+    if (mapper == null && field.getCustomMapper() != null) {
+      mapper = ValueMapper.of(field.getCustomMapper());
+    }
+    return addFieldValues(field, mapper, propertyValue, new ListSink().to(values));
+  }
+
+  /**
+   * Adds values of one field to CSV row values. Mapper appends its values directly to the sink, if it doesn't add
+   * any value, the value itself is added.
+   *
+   * @param field  definition of CSV field
+   * @param mapper value mapper of the field, null if the field doesn't have any
+   * @param value  raw value of the property from JSON, null if the property doesn't exist
+   * @param values sink with values of CSV row
+   * @return false if the whole row should be skipped (value of required field doesn't exist), otherwise true
+   */
+  public static boolean addFieldValues(Field field, ValueMapper mapper, Object value, ListSink values) {
+    if (mapper != null) {
+      int size = values.size();
+      mapper.map(field, value, values);
+      if (values.size() > size) {
+        return true;
+      }
+    }
+    if (value == null) {
+      if (field.isRequired()) {
+        log.debug("For the property '{}' doesn't exist any value, skip the whole line.", field.getJsonPath());
+        return false;
+      }
+      values.add(StringUtils.EMPTY);
+    } else {
+      values.add(value.toString());
+    }
+    return true;
+  }
+}
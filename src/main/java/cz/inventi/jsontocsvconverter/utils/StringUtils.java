@@ -1,6 +1,8 @@
 package cz.inventi.jsontocsvconverter.utils;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -8,16 +10,17 @@ import java.util.stream.Collectors;
  * Contains utils methods for work with Strings.
  */
 public class StringUtils {
+  private static final Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
 
   /**
-   * Gets values from string by regex.
+   * Gets values from string by regex. Compiled regex is cached, so it should be one of few constant regexes.
    *
    * @param text text
    * @param regex regex
    * @return all matches of regex in text.
    */
   public static List<String> findAllValuesByRegex(String text, String regex) {
-   return Pattern.compile("(?=(" + regex + "))")
+   return PATTERNS.computeIfAbsent(regex, r -> Pattern.compile("(?=(" + r + "))"))
            .matcher(text)
            .results()
            .map(r -> r.group(2))
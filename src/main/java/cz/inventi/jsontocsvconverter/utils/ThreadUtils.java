@@ -0,0 +1,56 @@
+package cz.inventi.jsontocsvconverter.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contains utils methods for conversions on more threads.
+ */
+public class ThreadUtils {
+  private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+  /**
+   * Waits for result of task, exceptions thrown by the task are propagated to the caller.
+   *
+   * @param task task of conversion
+   * @param <T>  type of result
+   * @return result of task
+   * @throws IOException when task threw IOException or waiting was interrupted
+   */
+  public static <T> T getResult(Future<T> task) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Parallel conversion was interrupted.");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * @param role role of threads in their names (e.g. "worker")
+   * @return factory of daemon threads named by pool number, role and thread number
+   */
+  public static ThreadFactory createThreadFactory(String role) {
+    String prefix = "json-to-csv-" + POOL_NUMBER.incrementAndGet() + "-" + role + "-";
+    AtomicInteger threadNumber = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
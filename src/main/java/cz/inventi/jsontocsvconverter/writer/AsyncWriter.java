@@ -0,0 +1,253 @@
+package cz.inventi.jsontocsvconverter.writer;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writer passing written characters to another writer on a dedicated writer thread.
+ * <p>
+ * Characters are collected to batches of fixed size. Full batches are put to a bounded queue, which is drained
+ * by the writer thread, and written batches are returned to the pool of free batches, so the batches form a ring
+ * and no batch is allocated after the start. When the queue is full, writing blocks until the writer thread
+ * writes some batch (backpressure), so memory is bounded by the depth of the queue.
+ * <p>
+ * If writing on the writer thread fails, the error is thrown (as the cause of {@link IOException}) by every next
+ * write or flush and by close, if it wasn't thrown before. Flush and close wait until all batches are written.
+ * The writer isn't thread-safe, it has to be used by one thread only.
+ */
+@Log4j2
+public class AsyncWriter extends Writer {
+
+  private final Writer target;
+  private final BlockingQueue<Batch> queue;
+  private final BlockingQueue<Batch> freeBatches;
+  private final Thread thread;
+  private final Object flushLock = new Object();
+  private Batch current;
+  private long flushRequests;
+  private long flushesDone;
+  private volatile Throwable failure;
+  private boolean failureReported;
+  private boolean closed;
+
+  /**
+   * Starts writer thread.
+   *
+   * @param target     target writer, it is used and closed only by the writer thread
+   * @param queueDepth maximal number of batches waiting for the writer thread
+   * @param batchSize  number of characters in one batch
+   * @param threadName name of the writer thread
+   */
+  public AsyncWriter(Writer target, int queueDepth, int batchSize, String threadName) {
+    if (queueDepth < 1) {
+      throw new IllegalArgumentException("Depth of write queue has to be positive: " + queueDepth);
+    }
+    this.target = target;
+    this.queue = new ArrayBlockingQueue<>(queueDepth);
+    // batches in the queue, the one written by the writer thread and the current one
+    this.freeBatches = new ArrayBlockingQueue<>(queueDepth + 2);
+    for (int i = 0; i < queueDepth + 2; i++) {
+      freeBatches.add(new Batch(Math.max(batchSize, 1)));
+    }
+    this.current = freeBatches.poll();
+    this.thread = new Thread(this::drain, threadName);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    ensureWritable();
+    if (current.length == current.chars.length) {
+      sendCurrent(false);
+    }
+    current.chars[current.length++] = (char) c;
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    ensureWritable();
+    while (len > 0) {
+      if (current.length == current.chars.length) {
+        sendCurrent(false);
+      }
+      int count = Math.min(len, current.chars.length - current.length);
+      System.arraycopy(cbuf, off, current.chars, current.length, count);
+      current.length += count;
+      off += count;
+      len -= count;
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    ensureWritable();
+    while (len > 0) {
+      if (current.length == current.chars.length) {
+        sendCurrent(false);
+      }
+      int count = Math.min(len, current.chars.length - current.length);
+      str.getChars(off, off + count, current.chars, current.length);
+      current.length += count;
+      off += count;
+      len -= count;
+    }
+  }
+
+  /**
+   * Sends the current batch and waits until all batches are written and the target writer is flushed.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureWritable();
+    long request;
+    synchronized (flushLock) {
+      request = ++flushRequests;
+    }
+    sendCurrent(true);
+    try {
+      synchronized (flushLock) {
+        while (flushesDone < request && failure == null) {
+          flushLock.wait();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Flush of CSV writer was interrupted.");
+    }
+    checkFailure();
+  }
+
+  /**
+   * Sends the current batch, waits until all batches are written and the writer thread closes the target writer.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      current.last = true;
+      queue.put(current);
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Close of CSV writer was interrupted.");
+    }
+    if (!failureReported) {
+      checkFailure();
+    }
+  }
+
+  private void ensureWritable() throws IOException {
+    if (closed) {
+      throw new IOException("Writer is closed.");
+    }
+    checkFailure();
+  }
+
+  /**
+   * Throws failure of the writer thread if writing failed.
+   */
+  private void checkFailure() throws IOException {
+    Throwable error = failure;
+    if (error != null) {
+      failureReported = true;
+      throw new IOException("Writing of CSV failed: " + error.getMessage(), error);
+    }
+  }
+
+  /**
+   * Puts the current batch to the queue (blocks if the queue is full) and takes a free batch.
+   */
+  private void sendCurrent(boolean flush) throws IOException {
+    current.flush = flush;
+    try {
+      queue.put(current);
+      current = freeBatches.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Write to CSV writer was interrupted.");
+    }
+  }
+
+  /**
+   * Loop of the writer thread. After a failure, batches are only returned to the pool, so the producer never
+   * stays blocked.
+   */
+  private void drain() {
+    try {
+      boolean last = false;
+      while (!last) {
+        Batch batch = queue.take();
+        if (failure == null) {
+          write(batch);
+        }
+        if (batch.flush) {
+          synchronized (flushLock) {
+            flushesDone++;
+            flushLock.notifyAll();
+          }
+        }
+        last = batch.last;
+        batch.reset();
+        freeBatches.add(batch);
+      }
+    } catch (InterruptedException e) {
+      fail(e);
+    } finally {
+      try {
+        target.close();
+      } catch (IOException | RuntimeException e) {
+        fail(e);
+      }
+    }
+  }
+
+  private void write(Batch batch) {
+    try {
+      target.write(batch.chars, 0, batch.length);
+      if (batch.flush) {
+        target.flush();
+      }
+    } catch (IOException | RuntimeException e) {
+      fail(e);
+    }
+  }
+
+  private void fail(Throwable error) {
+    if (failure == null) {
+      log.debug("Writing of CSV on thread {} failed.", Thread.currentThread().getName(), error);
+      failure = error;
+    }
+    synchronized (flushLock) {
+      flushLock.notifyAll();
+    }
+  }
+
+  /**
+   * Characters written at once by the writer thread.
+   */
+  private static class Batch {
+    private final char[] chars;
+    private int length;
+    private boolean flush;
+    private boolean last;
+
+    private Batch(int size) {
+      this.chars = new char[size];
+    }
+
+    private void reset() {
+      length = 0;
+      flush = false;
+      last = false;
+    }
+  }
+}
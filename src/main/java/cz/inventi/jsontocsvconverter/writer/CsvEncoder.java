@@ -0,0 +1,123 @@
+package cz.inventi.jsontocsvconverter.writer;
+
+import cz.inventi.jsontocsvconverter.model.CsvDefinition;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encoder of CSV rows producing the same output as SuperCSV writers with preference
+ * of {@link CsvRowWriter#createPreference(CsvDefinition)}.
+ * <ul>
+ *   <li>Value is encapsulated if it contains column delimiter, text encapsulator, '\r' or '\n'.</li>
+ *   <li>Text encapsulator in value is doubled.</li>
+ *   <li>Line breaks ("\r\n", '\r' or '\n') in value are replaced by record delimiter.</li>
+ *   <li>Null value is written as empty value.</li>
+ * </ul>
+ * The whole row is encoded to one reusable buffer and written by one call. Value is copied to the buffer directly
+ * and it is escaped only if the copy contains some special character. The encoder isn't thread-safe.
+ */
+public class CsvEncoder {
+  private static final int INITIAL_CAPACITY = 256;
+
+  private final char columnDelimiter;
+  private final char textEncapsulator;
+  private final char[] recordDelimiter;
+  private char[] buffer = new char[INITIAL_CAPACITY];
+  private int length;
+
+  /**
+   * @param csvDefinition definition of target CSV format
+   */
+  public CsvEncoder(CsvDefinition csvDefinition) {
+    this.columnDelimiter = csvDefinition.getColumnDelimiter().charAt(0);
+    this.textEncapsulator = csvDefinition.getTextEncapsulator().charAt(0);
+    this.recordDelimiter = csvDefinition.getRecordDelimiter().toCharArray();
+  }
+
+  /**
+   * Encodes values as one CSV row including record delimiter and writes it to writer.
+   *
+   * @param values values of row, string representation of every value is written
+   * @param writer target writer
+   * @throws IOException when some I/O problem occurred
+   */
+  public void writeRow(List<?> values, Writer writer) throws IOException {
+    length = 0;
+    boolean first = true;
+    for (Object value : values) {
+      if (!first) {
+        append(columnDelimiter);
+      }
+      first = false;
+      if (value != null) {
+        appendValue(value.toString());
+      }
+    }
+    ensureCapacity(recordDelimiter.length);
+    System.arraycopy(recordDelimiter, 0, buffer, length, recordDelimiter.length);
+    length += recordDelimiter.length;
+    writer.write(buffer, 0, length);
+  }
+
+  private void appendValue(String value) {
+    int valueLength = value.length();
+    ensureCapacity(valueLength);
+    value.getChars(0, valueLength, buffer, length);
+    int end = length + valueLength;
+    for (int i = length; i < end; i++) {
+      char c = buffer[i];
+      if (c == columnDelimiter || c == textEncapsulator || c == '\r' || c == '\n') {
+        appendEscapedValue(value);
+        return;
+      }
+    }
+    length = end;
+  }
+
+  /**
+   * Appends encapsulated value with escaped special characters.
+   */
+  private void appendEscapedValue(String value) {
+    append(textEncapsulator);
+    boolean skipNewLine = false;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (skipNewLine) {
+        skipNewLine = false;
+        if (c == '\n') {
+          continue;
+        }
+      }
+      if (c == columnDelimiter) {
+        append(c);
+      } else if (c == textEncapsulator) {
+        append(c);
+        append(c);
+      } else if (c == '\r' || c == '\n') {
+        for (char delimiterChar : recordDelimiter) {
+          append(delimiterChar);
+        }
+        skipNewLine = c == '\r';
+      } else {
+        append(c);
+      }
+    }
+    append(textEncapsulator);
+  }
+
+  private void append(char c) {
+    if (length == buffer.length) {
+      ensureCapacity(1);
+    }
+    buffer[length++] = c;
+  }
+
+  private void ensureCapacity(int additional) {
+    if (length + additional > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, length + additional));
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package cz.inventi.jsontocsvconverter.writer;
+
+import cz.inventi.jsontocsvconverter.model.CsvDefinition;
+import cz.inventi.jsontocsvconverter.model.Field;
+import lombok.extern.log4j.Log4j2;
+import org.supercsv.io.AbstractCsvWriter;
+import org.supercsv.prefs.CsvPreference;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Session-scoped CSV writer. It is opened once per conversion, used for the header and every row
+ * and closed once at the end of the conversion.
+ * <p>
+ * The underlying writer is expected to be already buffered (see {@link CsvDefinition#getBufferSize()}),
+ * so no additional buffering is done here. Rows are encoded by {@link CsvEncoder}, which produces the same output
+ * as SuperCSV without its per-value overhead.
+ */
+@Log4j2
+public class CsvRowWriter extends AbstractCsvWriter {
+
+  private final CsvDefinition csvDefinition;
+  private final Writer writer;
+  private final CsvEncoder encoder;
+
+  /**
+   * @param writer        buffered target writer
+   * @param csvDefinition definition of target CSV format
+   */
+  public CsvRowWriter(Writer writer, CsvDefinition csvDefinition) {
+    super(writer, createPreference(csvDefinition), false);
+    this.csvDefinition = csvDefinition;
+    this.writer = writer;
+    this.encoder = new CsvEncoder(csvDefinition);
+  }
+
+  /**
+   * Writes header with names of all fields from csvDefinition.
+   *
+   * @throws IOException when some I/O problem occurred
+   */
+  public void writeHeader() throws IOException {
+    List<String> header = csvDefinition.getFields().stream().map(Field::getName).collect(Collectors.toList());
+    if (header.isEmpty()) {
+      // SuperCSV refuses empty header
+      writeHeader(new String[0]);
+      return;
+    }
+    writeRow(header);
+  }
+
+  /**
+   * Writes row as rowValues separated by columnDelimiter.
+   *
+   * @param rowValues values of new row to be written
+   * @throws IOException when some I/O problem occurred
+   */
+  @Override
+  public void writeRow(List<?> rowValues) throws IOException {
+    if (rowValues.isEmpty()) {
+      log.trace("Empty rowValues are ignored. Use list of empty strings to write empty row");
+      return;
+    }
+    incrementRowAndLineNo();
+    encoder.writeRow(rowValues, writer);
+  }
+
+  /**
+   * Writes rows, which were already encoded to CSV by other writer with the same csvDefinition.
+   *
+   * @param encodedRows CSV rows including record delimiters
+   * @throws IOException when some I/O problem occurred
+   */
+  public void writeEncodedRows(CharSequence encodedRows) throws IOException {
+    writer.append(encodedRows);
+  }
+
+  /**
+   * @param csvDefinition definition of target CSV format
+   * @return CSV preference created based on csvDefinition
+   */
+  public static CsvPreference createPreference(CsvDefinition csvDefinition) {
+    char encapsulationChar = csvDefinition.getTextEncapsulator().charAt(0);
+    char delimiterChar = csvDefinition.getColumnDelimiter().charAt(0);
+    String recordDelimiter = csvDefinition.getRecordDelimiter();
+
+    return new CsvPreference.Builder(encapsulationChar, delimiterChar, recordDelimiter).build();
+  }
+}
@@ -0,0 +1,348 @@
+package cz.inventi.jsontocsvconverter.writer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Writer appending characters to a file through {@link FileChannel}.
+ * <p>
+ * Characters are encoded directly to one byte buffer, which is written to the channel only when it is full
+ * (or when the writer is flushed), so output costs about one system call per buffer size bytes.
+ * UTF-8, US-ASCII and ISO-8859-1 are encoded directly to the array of the buffer, other charsets by one
+ * {@link CharsetEncoder} created for the writer. Characters, which can't be encoded, are replaced by '?' the same way
+ * as by {@link java.io.OutputStreamWriter}. Buffers are pooled by their size and reused by other writers after close.
+ * The writer isn't thread-safe.
+ */
+public class FileChannelWriter extends Writer {
+  private static final int MAX_POOLED_BUFFERS = 4;
+  /**
+   * Pools of buffers by their capacity
+   */
+  private static final Map<Integer, Deque<ByteBuffer>> BUFFER_POOLS = new ConcurrentHashMap<>();
+  /**
+   * Maximal number of bytes of one encoded character (or surrogate pair) in the fast path
+   */
+  private static final int MAX_CHAR_BYTES = 4;
+  /**
+   * Minimal size of the byte buffer, so any encoded character fits into the empty buffer
+   */
+  private static final int MIN_BUFFER_SIZE = 16;
+  private static final int CHUNK_SIZE = 8 * 1024;
+  private static final byte REPLACEMENT = '?';
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  /**
+   * Encoder of other charsets than the fast ones, null for fast charsets
+   */
+  private final CharsetEncoder encoder;
+  private final boolean utf8;
+  /**
+   * The greatest character of single byte fast charset
+   */
+  private final char maxSingleByteChar;
+  /**
+   * Chunk for characters of strings
+   */
+  private final char[] chunk = new char[CHUNK_SIZE];
+  /**
+   * High surrogate from the end of the previous write, which wasn't encoded yet (0 if there is no such character)
+   */
+  private char pendingSurrogate;
+  private boolean closed;
+
+  private FileChannelWriter(FileChannel channel, Charset charset, int bufferSize) {
+    this.channel = channel;
+    this.buffer = acquireBuffer(Math.max(bufferSize, MIN_BUFFER_SIZE));
+    this.utf8 = StandardCharsets.UTF_8.equals(charset);
+    if (StandardCharsets.US_ASCII.equals(charset)) {
+      this.maxSingleByteChar = 0x7F;
+    } else if (StandardCharsets.ISO_8859_1.equals(charset)) {
+      this.maxSingleByteChar = 0xFF;
+    } else {
+      this.maxSingleByteChar = 0;
+    }
+    if (utf8 || maxSingleByteChar != 0) {
+      this.encoder = null;
+    } else {
+      this.encoder = charset.newEncoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+  }
+
+  /**
+   * Opens writer appending to file, the file is created if it doesn't exist.
+   *
+   * @param fileName   name of target file
+   * @param charset    charset of target file
+   * @param bufferSize size (in bytes) of the byte buffer - the amount of bytes written to the channel at once
+   * @return new writer
+   * @throws IOException when file can't be opened
+   */
+  public static FileChannelWriter open(String fileName, Charset charset, int bufferSize) throws IOException {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size <= 0");
+    }
+    FileChannel channel = FileChannel.open(Paths.get(fileName),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    return new FileChannelWriter(channel, charset, bufferSize);
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    chunk[0] = (char) c;
+    write(chunk, 0, 1);
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    while (len > 0) {
+      int count = Math.min(len, chunk.length);
+      str.getChars(off, off + count, chunk, 0);
+      write(chunk, 0, count);
+      off += count;
+      len -= count;
+    }
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    ensureOpen();
+    if (len == 0) {
+      return;
+    }
+    if (encoder != null) {
+      encode(cbuf, off, len);
+    } else if (utf8) {
+      encodeUtf8(cbuf, off, off + len);
+    } else {
+      encodeSingleByte(cbuf, off, off + len);
+    }
+  }
+
+  private void encodeUtf8(char[] chars, int start, int end) throws IOException {
+    byte[] bytes = buffer.array();
+    int position = buffer.position();
+    int i = start;
+    if (pendingSurrogate != 0) {
+      position = ensureRoom(position);
+      if (Character.isLowSurrogate(chars[i])) {
+        position = putUtf8CodePoint(bytes, position, Character.toCodePoint(pendingSurrogate, chars[i++]));
+      } else {
+        bytes[position++] = REPLACEMENT;
+      }
+      pendingSurrogate = 0;
+    }
+    while (i < end) {
+      // ASCII characters are copied while there is a room for them
+      int asciiEnd = Math.min(end, i + bytes.length - position);
+      while (i < asciiEnd && chars[i] < 0x80) {
+        bytes[position++] = (byte) chars[i++];
+      }
+      if (i == end) {
+        break;
+      }
+      position = ensureRoom(position);
+      char c = chars[i++];
+      if (c < 0x80) {
+        bytes[position++] = (byte) c;
+      } else if (c < 0x800) {
+        bytes[position++] = (byte) (0xC0 | (c >> 6));
+        bytes[position++] = (byte) (0x80 | (c & 0x3F));
+      } else if (!Character.isSurrogate(c)) {
+        bytes[position++] = (byte) (0xE0 | (c >> 12));
+        bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[position++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i == end) {
+        pendingSurrogate = c;
+      } else if (Character.isHighSurrogate(c) && Character.isLowSurrogate(chars[i])) {
+        position = putUtf8CodePoint(bytes, position, Character.toCodePoint(c, chars[i++]));
+      } else {
+        bytes[position++] = REPLACEMENT;
+      }
+    }
+    buffer.position(position);
+  }
+
+  private static int putUtf8CodePoint(byte[] bytes, int position, int codePoint) {
+    bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+    bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+    bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+    bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+    return position;
+  }
+
+  /**
+   * Encodes characters to US-ASCII or ISO-8859-1, surrogate pair is replaced by one replacement byte.
+   */
+  private void encodeSingleByte(char[] chars, int start, int end) throws IOException {
+    byte[] bytes = buffer.array();
+    int position = buffer.position();
+    int i = start;
+    if (pendingSurrogate != 0) {
+      position = ensureRoom(position);
+      bytes[position++] = REPLACEMENT;
+      if (Character.isLowSurrogate(chars[i])) {
+        i++;
+      }
+      pendingSurrogate = 0;
+    }
+    while (i < end) {
+      position = ensureRoom(position);
+      char c = chars[i++];
+      if (c <= maxSingleByteChar) {
+        bytes[position++] = (byte) c;
+      } else if (Character.isHighSurrogate(c) && i == end) {
+        pendingSurrogate = c;
+      } else {
+        if (Character.isHighSurrogate(c) && Character.isLowSurrogate(chars[i])) {
+          i++;
+        }
+        bytes[position++] = REPLACEMENT;
+      }
+    }
+    buffer.position(position);
+  }
+
+  private void encode(char[] chars, int off, int len) throws IOException {
+    while (pendingSurrogate != 0 && len > 0) {
+      CharBuffer pair = CharBuffer.wrap(new char[]{pendingSurrogate, chars[off]});
+      pendingSurrogate = 0;
+      encode(pair, false);
+      off++;
+      len--;
+      if (pair.hasRemaining()) {
+        pendingSurrogate = pair.get();
+      }
+    }
+    CharBuffer input = CharBuffer.wrap(chars, off, len);
+    encode(input, false);
+    if (input.hasRemaining()) {
+      pendingSurrogate = input.get();
+    }
+  }
+
+  /**
+   * Encodes input by encoder, the buffer is written to the channel whenever it is full.
+   */
+  private void encode(CharBuffer input, boolean endOfInput) throws IOException {
+    while (true) {
+      CoderResult result = encoder.encode(input, buffer, endOfInput);
+      if (result.isUnderflow()) {
+        return;
+      }
+      if (result.isOverflow()) {
+        writeBuffer();
+      } else {
+        result.throwException();
+      }
+    }
+  }
+
+  /**
+   * @return position in the buffer with room for at least one encoded character
+   */
+  private int ensureRoom(int position) throws IOException {
+    if (buffer.capacity() - position < MAX_CHAR_BYTES) {
+      buffer.position(position);
+      writeBuffer();
+      return buffer.position();
+    }
+    return position;
+  }
+
+  /**
+   * Writes the whole content of the buffer to the channel.
+   */
+  private void writeBuffer() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Writes encoded characters to the file. A high surrogate written as the last character stays in the writer
+   * until the next character is written.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    writeBuffer();
+  }
+
+  /**
+   * Encodes the rest of characters, writes them to the file and closes the file. The buffer is returned
+   * to the pool.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      finishEncoding();
+      writeBuffer();
+    } finally {
+      closed = true;
+      try {
+        channel.close();
+      } finally {
+        releaseBuffer(buffer);
+      }
+    }
+  }
+
+  private void finishEncoding() throws IOException {
+    if (encoder == null) {
+      if (pendingSurrogate != 0) {
+        ensureRoom(buffer.position());
+        buffer.put(REPLACEMENT);
+        pendingSurrogate = 0;
+      }
+      return;
+    }
+    CharBuffer input = pendingSurrogate != 0 ? CharBuffer.wrap(new char[]{pendingSurrogate}) : CharBuffer.allocate(0);
+    pendingSurrogate = 0;
+    encode(input, true);
+    while (encoder.flush(buffer).isOverflow()) {
+      writeBuffer();
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Writer is closed.");
+    }
+  }
+
+  private static ByteBuffer acquireBuffer(int size) {
+    Deque<ByteBuffer> pool = BUFFER_POOLS.get(size);
+    ByteBuffer pooled = pool != null ? pool.poll() : null;
+    return pooled != null ? pooled : ByteBuffer.allocate(size);
+  }
+
+  private static void releaseBuffer(ByteBuffer buffer) {
+    buffer.clear();
+    Deque<ByteBuffer> pool = BUFFER_POOLS.computeIfAbsent(buffer.capacity(), size -> new ConcurrentLinkedDeque<>());
+    if (pool.size() < MAX_POOLED_BUFFERS) {
+      pool.offer(buffer);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+import cz.inventi.jsontocsvconverter.model.ArraySizes;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ArraySizesTest {
+
+    @Test
+    void put__manyIndexesOfOneArray__blockGrowsPastInitialCapacity() {
+        ArraySizes sizes = new ArraySizes();
+        for (int i = 0; i < 1000; i++) {
+            sizes.put(new int[]{i}, 1, i + 1);
+        }
+        sizes.put(new int[]{100_000}, 1, 7);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i + 1, sizes.get(new int[]{i}, 1));
+        }
+        assertEquals(7, sizes.get(new int[]{100_000}, 1));
+        assertEquals(ArraySizes.ABSENT, sizes.get(new int[]{1000}, 1));
+        assertEquals(1001, sizes.size());
+    }
+
+    @Test
+    void put__interleavedArrays__movedBlocksKeepTheirSizes() {
+        ArraySizes sizes = new ArraySizes();
+        // blocks of children of both items grow alternately, so every growth moves a block behind the other one
+        for (int i = 0; i < 100; i++) {
+            sizes.put(new int[]{0, i}, 2, i);
+            sizes.put(new int[]{1, i}, 2, 1000 + i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, sizes.get(new int[]{0, i}, 2));
+            assertEquals(1000 + i, sizes.get(new int[]{1, i}, 2));
+        }
+        assertEquals(200, sizes.size());
+    }
+
+    @Test
+    void put__deeplyNestedArrays__sizesOfAllLevelsAreKept() {
+        ArraySizes sizes = new ArraySizes();
+        int[] indexes = IntStream.range(0, 64).map(i -> i % 5).toArray();
+        for (int count = 0; count <= indexes.length; count++) {
+            sizes.put(indexes, count, count);
+        }
+
+        for (int count = 0; count <= indexes.length; count++) {
+            assertEquals(count, sizes.get(indexes, count));
+        }
+        int[] otherIndexes = indexes.clone();
+        otherIndexes[40] = 4;
+        assertEquals(40, sizes.get(otherIndexes, 40));
+        assertEquals(ArraySizes.ABSENT, sizes.get(otherIndexes, 41));
+        assertEquals(65, sizes.size());
+    }
+
+    @Test
+    void get__missingSizes__areAbsent() {
+        ArraySizes sizes = new ArraySizes();
+        assertEquals(ArraySizes.ABSENT, sizes.get(new int[0], 0));
+        assertEquals(ArraySizes.ABSENT, sizes.get(new int[]{0}, 1));
+
+        sizes.put(new int[]{2, 3, 1}, 3, 4);
+
+        // inner nodes of the trie don't have any size
+        assertEquals(ArraySizes.ABSENT, sizes.get(new int[0], 0));
+        assertEquals(ArraySizes.ABSENT, sizes.get(new int[]{2}, 1));
+        assertEquals(ArraySizes.ABSENT, sizes.get(new int[]{2, 3}, 2));
+        assertEquals(ArraySizes.ABSENT, sizes.get(new int[]{2, 3, 0}, 3));
+        assertEquals(ArraySizes.ABSENT, sizes.get(new int[]{2, 3, 1, 0}, 4));
+        assertEquals(ArraySizes.ABSENT, sizes.get(new int[]{-1}, 1));
+        assertEquals(4, sizes.get(new int[]{2, 3, 1}, 3));
+        // indexes after count are ignored
+        assertEquals(4, sizes.get(new int[]{2, 3, 1, 9}, 3));
+        assertEquals(1, sizes.size());
+        assertThrows(IllegalArgumentException.class, () -> sizes.put(new int[]{-1}, 1, 0));
+    }
+
+    @Test
+    void put__zeroAndOverwrittenSizes__areCountedOnce() {
+        ArraySizes sizes = new ArraySizes();
+        sizes.put(new int[]{0}, 1, 0);
+        sizes.put(new int[]{0}, 1, 3);
+
+        assertEquals(3, sizes.get(new int[]{0}, 1));
+        assertEquals(1, sizes.size());
+    }
+
+    @Test
+    void put__randomIndexes__sameAsMap() {
+        Random random = new Random(42);
+        ArraySizes sizes = new ArraySizes();
+        Map<List<Integer>, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            int[] indexes = random.ints(random.nextInt(5), 0, random.nextBoolean() ? 3 : 200).toArray();
+            int size = random.nextInt(10);
+            sizes.put(indexes, indexes.length, size);
+            expected.put(toList(indexes), size);
+        }
+
+        assertEquals(expected.size(), sizes.size());
+        for (Map.Entry<List<Integer>, Integer> entry : expected.entrySet()) {
+            int[] indexes = entry.getKey().stream().mapToInt(Integer::intValue).toArray();
+            assertEquals(entry.getValue(), sizes.get(indexes, indexes.length));
+        }
+    }
+
+    @Test
+    void equals__sameSizesInOtherOrder__areEqual() {
+        ArraySizes first = new ArraySizes();
+        first.put(new int[]{0, 1}, 2, 2);
+        first.put(new int[]{5}, 1, 1);
+        ArraySizes second = new ArraySizes();
+        second.put(new int[]{5}, 1, 1);
+        second.put(new int[]{0, 1}, 2, 2);
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals("{[0, 1]=2, [5]=1}", first.toString());
+
+        second.put(new int[]{0}, 1, 2);
+        assertNotEquals(first, second);
+    }
+
+    private static List<Integer> toList(int[] indexes) {
+        return IntStream.of(indexes).boxed().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,156 @@
+import cz.inventi.jsontocsvconverter.writer.FileChannelWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Compares output of {@link FileChannelWriter} with {@link OutputStreamWriter} byte by byte.
+ */
+public class FileChannelWriterTest {
+    private static final List<Charset> CHARSETS = List.of(StandardCharsets.UTF_8, StandardCharsets.US_ASCII,
+            StandardCharsets.ISO_8859_1, Charset.forName("windows-1250"), StandardCharsets.UTF_16);
+    /**
+     * Smaller than the minimal buffer, so the minimal buffer (16 bytes) is used
+     */
+    private static final int SMALL_BUFFER_SIZE = 1;
+    private static final String SUPPLEMENTARY = "\uD83D\uDE00";
+    private static final String HIGH_SURROGATE = "\uD83D";
+    private static final String LOW_SURROGATE = "\uDE00";
+
+    @TempDir
+    Path tempDir;
+
+    private int fileCount;
+
+    @Test
+    void write__supplementaryCharactersSplitAcrossWrites__sameAsOutputStreamWriter() throws IOException {
+        String text = "a\u010D" + SUPPLEMENTARY + "b" + SUPPLEMENTARY + SUPPLEMENTARY + "\u00E9c" + SUPPLEMENTARY;
+        for (Charset charset : CHARSETS) {
+            for (int split = 0; split <= text.length(); split++) {
+                assertSameOutput(charset, List.of(text.substring(0, split), text.substring(split)));
+            }
+            assertSameOutput(charset, splitToChars(text));
+        }
+    }
+
+    @Test
+    void write__supplementaryCharactersOnBufferBoundaries__sameAsOutputStreamWriter() throws IOException {
+        for (Charset charset : CHARSETS) {
+            // every shift moves the surrogate pairs to other positions relative to the 16 bytes buffer
+            for (int shift = 0; shift < 20; shift++) {
+                String text = "x".repeat(shift) + (SUPPLEMENTARY + "\u0161\u20AC" + "abc").repeat(20);
+                assertSameOutput(charset, List.of(text));
+                assertSameOutput(charset, List.of(text.substring(0, shift + 1), text.substring(shift + 1)));
+            }
+        }
+    }
+
+    @Test
+    void write__loneSurrogates__sameAsOutputStreamWriter() throws IOException {
+        List<List<String>> inputs = List.of(
+                List.of("a" + LOW_SURROGATE + "b"),
+                List.of("a" + HIGH_SURROGATE + "b"),
+                List.of("a" + HIGH_SURROGATE, "b"),
+                List.of("a" + HIGH_SURROGATE, HIGH_SURROGATE, LOW_SURROGATE),
+                List.of(LOW_SURROGATE + HIGH_SURROGATE, "", LOW_SURROGATE + LOW_SURROGATE),
+                List.of(HIGH_SURROGATE + HIGH_SURROGATE + LOW_SURROGATE),
+                // high surrogate is pending when the writer is closed
+                List.of("a" + HIGH_SURROGATE),
+                List.of(SUPPLEMENTARY + HIGH_SURROGATE),
+                List.of(HIGH_SURROGATE)
+        );
+        for (Charset charset : CHARSETS) {
+            for (List<String> input : inputs) {
+                assertSameOutput(charset, input);
+            }
+        }
+    }
+
+    @Test
+    void write__singleCharacters__sameAsOutputStreamWriter() throws IOException {
+        String text = "\u017Elu\u0165ou\u010Dk\u00FD k\u016F\u0148 " + SUPPLEMENTARY + " \u20AC";
+        for (Charset charset : CHARSETS) {
+            Path file = nextFile();
+            try (Writer writer = FileChannelWriter.open(file.toString(), charset, SMALL_BUFFER_SIZE)) {
+                for (int i = 0; i < text.length(); i++) {
+                    writer.write(text.charAt(i));
+                }
+            }
+            assertArrayEquals(encodeByOutputStreamWriter(charset, List.of(text)), Files.readAllBytes(file), charset.name());
+        }
+    }
+
+    @Test
+    void close__closedWriterDoesNotShareBufferWithOpenWriters() throws IOException {
+        Path closedFile = nextFile();
+        FileChannelWriter closedWriter = FileChannelWriter.open(closedFile.toString(), StandardCharsets.UTF_8, SMALL_BUFFER_SIZE);
+        closedWriter.write("closed");
+        closedWriter.close();
+        // the second close doesn't return the buffer to the pool again
+        closedWriter.close();
+
+        Path firstFile = nextFile();
+        Path secondFile = nextFile();
+        try (Writer first = FileChannelWriter.open(firstFile.toString(), StandardCharsets.UTF_8, SMALL_BUFFER_SIZE);
+             Writer second = FileChannelWriter.open(secondFile.toString(), StandardCharsets.UTF_8, SMALL_BUFFER_SIZE)) {
+            first.write("first");
+            assertThrows(IOException.class, () -> closedWriter.write("x"));
+            assertThrows(IOException.class, () -> closedWriter.write('x'));
+            assertThrows(IOException.class, closedWriter::flush);
+            second.write("second");
+            first.write(" writer");
+            second.write(" writer");
+        }
+
+        assertEquals("closed", Files.readString(closedFile));
+        assertEquals("first writer", Files.readString(firstFile));
+        assertEquals("second writer", Files.readString(secondFile));
+    }
+
+    private void assertSameOutput(Charset charset, List<String> writes) throws IOException {
+        Path file = nextFile();
+        try (Writer writer = FileChannelWriter.open(file.toString(), charset, SMALL_BUFFER_SIZE)) {
+            for (String write : writes) {
+                writer.write(write);
+            }
+        }
+        assertArrayEquals(encodeByOutputStreamWriter(charset, writes), Files.readAllBytes(file),
+                () -> charset.name() + " " + writes);
+    }
+
+    private static byte[] encodeByOutputStreamWriter(Charset charset, List<String> writes) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(output, charset)) {
+            for (String write : writes) {
+                writer.write(write);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static List<String> splitToChars(String text) {
+        List<String> chars = new ArrayList<>();
+        for (int i = 0; i < text.length(); i++) {
+            chars.add(String.valueOf(text.charAt(i)));
+        }
+        return chars;
+    }
+
+    private Path nextFile() {
+        return tempDir.resolve("output" + fileCount++ + ".csv");
+    }
+}
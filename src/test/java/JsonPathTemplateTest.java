@@ -0,0 +1,89 @@
+import cz.inventi.jsontocsvconverter.model.JsonPathTemplate;
+import cz.inventi.jsontocsvconverter.model.PathSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonPathTemplateTest {
+
+    @Test
+    void fill__indexesOfMoreLevels() {
+        JsonPathTemplate template = new JsonPathTemplate("organizations[*].users[*].groups[*].name");
+        int[] indexes = {1, 12, 3};
+
+        assertEquals(3, template.getSlotCount());
+        assertEquals("organizations[*].users[*].groups[*].name", template.fill(indexes, 0));
+        assertEquals("organizations[1].users[*].groups[*].name", template.fill(indexes, 1));
+        assertEquals("organizations[1].users[12].groups[*].name", template.fill(indexes, 2));
+        assertEquals("organizations[1].users[12].groups[3].name", template.fill(indexes, 3));
+        assertEquals("organizations[1].users[12].groups[*].name", template.fill(List.of(1, 12)));
+        assertEquals("organizations[1].users[12].groups[3].name", template.fill(List.of(1, 12, 3)));
+    }
+
+    @Test
+    void fillArrayPath__pathOfTheFirstNotFilledArray() {
+        JsonPathTemplate template = new JsonPathTemplate("$.organizations[*].users[*].id");
+        int[] indexes = {4, 0};
+
+        assertEquals("$.organizations", template.fillArrayPath(indexes, 0));
+        assertEquals("$.organizations[4].users", template.fillArrayPath(indexes, 1));
+        assertEquals("$.organizations[4].users[0].id", template.fillArrayPath(indexes, 2));
+    }
+
+    @Test
+    void segments__rootPrefixedAndBarePaths() {
+        JsonPathTemplate bare = new JsonPathTemplate("organizations[*].users[*].id");
+        JsonPathTemplate prefixed = new JsonPathTemplate("$.organizations[*].users[*].id");
+
+        assertTrue(bare.isNavigable());
+        assertEquals(bare.getSegments(), prefixed.getSegments());
+        assertEquals(bare.getSlotCount(), prefixed.getSlotCount());
+        assertEquals(1, prefixed.getSegmentCountBefore(0));
+        assertEquals(3, prefixed.getSegmentCountBefore(1));
+        assertEquals(5, prefixed.getSegmentCountBefore(2));
+        assertEquals(4, prefixed.getRelativeSegmentsStart());
+        // filled paths keep the original notation
+        assertEquals("organizations[2].users[*].id", bare.fill(new int[]{2}, 1));
+        assertEquals("$.organizations[2].users[*].id", prefixed.fill(new int[]{2}, 1));
+        assertNotEquals(bare, prefixed);
+        assertEquals(bare, new JsonPathTemplate("organizations[*].users[*].id"));
+    }
+
+    @Test
+    void segments__bracketNamesWithDotsAndSpaces() {
+        JsonPathTemplate template = new JsonPathTemplate("$['first.level'][*]['item name']");
+
+        assertTrue(template.isNavigable());
+        assertEquals(List.of(PathSegment.property("first.level"), PathSegment.index(PathSegment.ANY_INDEX),
+                PathSegment.property("item name")), template.getSegments());
+        assertEquals(1, template.getSlotCount());
+        assertEquals(2, template.getRelativeSegmentsStart());
+        assertEquals("$['first.level'][7]['item name']", template.fill(new int[]{7}, 1));
+        assertEquals("$['first.level']", template.fillArrayPath(new int[0], 0));
+    }
+
+    @Test
+    void fill__notNavigablePath__isFilledAsText() {
+        JsonPathTemplate template = new JsonPathTemplate("$..organizations[*].users[*].id");
+
+        assertFalse(template.isNavigable());
+        assertEquals(2, template.getSlotCount());
+        assertEquals("$..organizations[0].users[5].id", template.fill(new int[]{0, 5}, 2));
+    }
+
+    @Test
+    void fill__pathWithoutArrays__isUnchanged() {
+        JsonPathTemplate template = new JsonPathTemplate("['a.b'].c");
+
+        assertEquals(0, template.getSlotCount());
+        assertEquals(0, template.getRelativeSegmentsStart());
+        assertEquals(2, template.getSegmentCountBefore(0));
+        assertEquals("['a.b'].c", template.fill(new int[0], 0));
+        assertEquals("['a.b'].c", template.fill(List.of()));
+    }
+}
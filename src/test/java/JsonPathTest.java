@@ -0,0 +1,57 @@
+import cz.inventi.jsontocsvconverter.model.JsonPath;
+import cz.inventi.jsontocsvconverter.model.JsonPathType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JsonPathTest {
+
+    @Test
+    void addNewDescendantJsonPath__addedToSubtree__isFoundByAllAncestors() {
+        JsonPath root = new JsonPath(JsonPathType.ROOT, new ArrayList<>());
+        JsonPath organizations = root.addNewDescendantJsonPath("organizations", JsonPathType.ARRAY);
+        JsonPath users = organizations.addNewDescendantJsonPath("organizations[*].users", JsonPathType.ARRAY);
+        JsonPath userId = users.addNewDescendantJsonPath("organizations[*].users[*].id", JsonPathType.PROPERTY);
+
+        assertSame(users, root.findDescendantJsonPath("organizations[*].users"));
+        assertSame(userId, root.findDescendantJsonPath("organizations[*].users[*].id"));
+        assertSame(userId, organizations.findDescendantJsonPath("organizations[*].users[*].id"));
+        assertSame(userId, root.addNewDescendantJsonPath("organizations[*].users[*].id", JsonPathType.PROPERTY));
+        assertNull(users.findDescendantJsonPath("organizations"));
+    }
+
+    @Test
+    void getChildren__isUnmodifiable() {
+        JsonPath root = new JsonPath(JsonPathType.ROOT, new ArrayList<>());
+        root.addNewDescendantJsonPath("name", JsonPathType.PROPERTY);
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> root.getChildren().add(new JsonPath("version", JsonPathType.PROPERTY)));
+        assertEquals(1, root.getChildren().size());
+    }
+
+    @Test
+    void toBuilder__copyIsIndexedAndIndependent() {
+        JsonPath root = new JsonPath(JsonPathType.ROOT, new ArrayList<>());
+        root.addNewDescendantJsonPath("organizations", JsonPathType.ARRAY);
+        root.addNewDescendantJsonPath("organizations[*].id", JsonPathType.PROPERTY);
+
+        JsonPath copy = root.toBuilder().build();
+        JsonPath organizationsCopy = copy.findDescendantJsonPath("organizations");
+        copy.addNewDescendantJsonPath("organizations[*].name", JsonPathType.PROPERTY);
+
+        assertEquals(root.findDescendantJsonPath("organizations").getPath(), organizationsCopy.getPath());
+        assertNotSame(root.findDescendantJsonPath("organizations"), organizationsCopy);
+        assertSame(copy.findDescendantJsonPath("organizations[*].name"),
+                organizationsCopy.findDescendantJsonPath("organizations[*].name"));
+        assertNull(root.findDescendantJsonPath("organizations[*].name"));
+        assertEquals(1, root.findDescendantJsonPath("organizations").getChildren().size());
+        assertEquals(2, organizationsCopy.getChildren().size());
+    }
+}
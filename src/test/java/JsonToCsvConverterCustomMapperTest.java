@@ -1,4 +1,5 @@
 import cz.inventi.jsontocsvconverter.JsonToCsvConverter;
+import cz.inventi.jsontocsvconverter.mapper.MemoizingMapper;
 import cz.inventi.jsontocsvconverter.model.CsvField;
 import cz.inventi.jsontocsvconverter.model.Field;
 import cz.inventi.jsontocsvconverter.model.csvdefinitions.DefaultCsvDefinition;
@@ -16,6 +17,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -53,6 +56,104 @@ public class JsonToCsvConverterCustomMapperTest {
         assertEquals(output.get(1).get(0), output.get(1).get(1));
     }
 
+    @Test
+    void convertJsonFile__missingRequiredParentValue__nestedValuesAreNotMapped() throws IOException {
+        var inputJsonFilename = "test8-input.json";
+        AtomicInteger mappedUserNames = new AtomicInteger();
+        List<Field> fields =  List.of(
+                new CsvField("ORG ID", "organizations[*].id", false),
+                new CsvField("ORG CODE", "organizations[*].code", true),
+                new CsvField("USER NAME", "organizations[*].users[*].name", false, (field, value) -> {
+                    mappedUserNames.incrementAndGet();
+                    return List.of(value);
+                })
+        );
+        OutputStream testOutputStream = new ByteArrayOutputStream();
+
+        OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert " + inputJsonFilename, testOutputStream, fields);
+
+        convertJsonToCsv(inputJsonFilename, csvDefinition);
+
+        List<List<String>> output = ConverterTestUtil.outputStreamToListOfLists(csvDefinition.getOutputStream(), csvDefinition.getColumnDelimiter());
+        assertEquals(1, output.size()); // header only
+        assertEquals(0, mappedUserNames.get());
+    }
+
+    @Test
+    void convertJsonFile__parentValueIsMappedOncePerItem() throws IOException {
+        var inputJsonFilename = "test8-input.json";
+        AtomicInteger mappedOrgNames = new AtomicInteger();
+        List<Field> fields =  List.of(
+                new CsvField("ORG NAME", "organizations[*].name", false, (field, value) -> {
+                    mappedOrgNames.incrementAndGet();
+                    return List.of(value.toUpperCase());
+                }),
+                new CsvField("USER NAME", "organizations[*].users[*].name", false)
+        );
+
+        OutputStream fileOutputStream = new ByteArrayOutputStream();
+        OutputStreamCsvDefinition fileCsvDefinition = new OutputStreamCsvDefinition("Test Convert " + inputJsonFilename, fileOutputStream, fields);
+        convertJsonToCsv(inputJsonFilename, fileCsvDefinition);
+        assertEquals(2, mappedOrgNames.getAndSet(0));
+
+        OutputStream streamOutputStream = new ByteArrayOutputStream();
+        OutputStreamCsvDefinition streamCsvDefinition = new OutputStreamCsvDefinition("Test Convert " + inputJsonFilename, streamOutputStream, fields);
+        jsonToCsvConverter.convert(ConverterTestUtil.inputStreamFromFile(TEST_RESOURCES_INPUT_FOLDER + "/" + inputJsonFilename), streamCsvDefinition);
+        assertEquals(2, mappedOrgNames.get());
+
+        List<List<String>> output = ConverterTestUtil.outputStreamToListOfLists(fileOutputStream, fileCsvDefinition.getColumnDelimiter());
+        assertEquals(7, output.size());
+        assertEquals(List.of("FIRST TEST ORGANIZATION", "Fourth test user"), output.get(4));
+        assertEquals(output, ConverterTestUtil.outputStreamToListOfLists(streamOutputStream, streamCsvDefinition.getColumnDelimiter()));
+    }
+
+    @Test
+    void convertJsonFile__notPureMapperIsMemoized() throws IOException {
+        var inputJsonFilename = "test8-input.json";
+        MemoizingMapper orgNameMapper = MemoizingMapper.of((field, value) -> List.of(value.toUpperCase()), 1);
+        List<Field> fields =  List.of(
+                new CsvField("ORG NAME", "organizations[*].name", false, orgNameMapper, false),
+                new CsvField("USER NAME", "organizations[*].users[*].name", false)
+        );
+        OutputStream testOutputStream = new ByteArrayOutputStream();
+
+        OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert " + inputJsonFilename, testOutputStream, fields);
+
+        convertJsonToCsv(inputJsonFilename, csvDefinition);
+
+        List<List<String>> output = ConverterTestUtil.outputStreamToListOfLists(csvDefinition.getOutputStream(), csvDefinition.getColumnDelimiter());
+        assertEquals(7, output.size());
+        assertEquals(List.of("SECOND TEST ORGANIZATION", "Sixth test user"), output.get(6));
+        // mapper isn't pure, so it is called for each of 6 rows, but only the first value of each organization is mapped
+        assertEquals(2, orgNameMapper.getMisses());
+        assertEquals(4, orgNameMapper.getHits());
+        assertEquals(1, orgNameMapper.getEvictions());
+        assertEquals(1, orgNameMapper.size());
+    }
+
+    @Test
+    void convertJsonFile__valueMapperGetsRawValue() throws IOException {
+        var inputJsonFilename = "test8-input.json";
+        List<Field> fields =  List.of(
+                CsvField.builder().name("OPTIONS").jsonPath("options")
+                        .valueMapper((field, value, sink) -> ((Map<?, ?>) value).forEach((key, option) -> sink.add(key + "=" + option)))
+                        .build(),
+                new CsvField("ORG NAME", "organizations[*].name", false)
+        );
+        OutputStream fileOutputStream = new ByteArrayOutputStream();
+        OutputStreamCsvDefinition fileCsvDefinition = new OutputStreamCsvDefinition("Test Convert " + inputJsonFilename, fileOutputStream, fields);
+        convertJsonToCsv(inputJsonFilename, fileCsvDefinition);
+
+        OutputStream streamOutputStream = new ByteArrayOutputStream();
+        OutputStreamCsvDefinition streamCsvDefinition = new OutputStreamCsvDefinition("Test Convert " + inputJsonFilename, streamOutputStream, fields);
+        jsonToCsvConverter.convert(ConverterTestUtil.inputStreamFromFile(TEST_RESOURCES_INPUT_FOLDER + "/" + inputJsonFilename), streamCsvDefinition);
+
+        List<List<String>> output = ConverterTestUtil.outputStreamToListOfLists(fileOutputStream, fileCsvDefinition.getColumnDelimiter());
+        assertEquals(3, output.size());
+        assertEquals(List.of("advanced=value", "First test organization"), output.get(1));
+        assertEquals(output, ConverterTestUtil.outputStreamToListOfLists(streamOutputStream, streamCsvDefinition.getColumnDelimiter()));
+    }
+
     private void convertJsonToCsv(String source, OutputStreamCsvDefinition csvDefinition) throws IOException {
         jsonToCsvConverter.convert(TEST_RESOURCES_INPUT_FOLDER + "/" + source, csvDefinition);
     }
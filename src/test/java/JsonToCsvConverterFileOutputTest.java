@@ -3,6 +3,7 @@ import cz.inventi.jsontocsvconverter.model.CsvDefinition;
 import cz.inventi.jsontocsvconverter.model.CsvField;
 import cz.inventi.jsontocsvconverter.model.Field;
 import cz.inventi.jsontocsvconverter.model.csvdefinitions.FileCsvDefinition;
+import cz.inventi.jsontocsvconverter.model.csvdefinitions.OutputStreamCsvDefinition;
 import lombok.extern.log4j.Log4j2;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterAll;
@@ -11,15 +12,20 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS) // needed for using @AfterAll
@@ -176,6 +182,17 @@ public class JsonToCsvConverterFileOutputTest {
     );
   }
 
+  @Test
+  void convertJsonFile__withNestedArrayWithoutParentArrayFields__allFieldsAreOptional() throws IOException {
+    runTest("test8-input.json", "test8.1-output.csv", 6,
+            List.of(
+                    new CsvField("NAME", "name", false),
+                    new CsvField("USER ID", "organizations[*].users[*].id", false),
+                    new CsvField("USER NAME", "organizations[*].users[*].name", false)
+            )
+    );
+  }
+
   @Test
   void convertJsonFile__withMoreNestedArrays__allFieldsAreOptional() throws IOException {
     runTest("test9-input.json", "test9-output.csv", 11,
@@ -213,6 +230,74 @@ public class JsonToCsvConverterFileOutputTest {
     runTest("test13-input.json", "test13-output.csv", 10, ConverterTestUtil.getComplexStructureTestFields());
   }
 
+  @Test
+  void convertJsonFile__propertiesAfterNestedArrays__allFieldsAreOptional() throws IOException {
+    runTest("test15-input.json", "test15-output.csv", 3,
+            List.of(
+                    new CsvField("NAME", "name", false),
+                    new CsvField("VERSION", "version", false),
+                    new CsvField("DATE", "date", false),
+                    new CsvField("ORG ID", "organizations[*].id", false),
+                    new CsvField("ORG NAME", "organizations[*].name", false),
+                    new CsvField("USER ID", "organizations[*].users[*].id", false),
+                    new CsvField("USER NAME", "organizations[*].users[*].name", false)
+            )
+    );
+  }
+
+  @Test
+  void convertJson__outputLargerThanBuffer__isWrittenCompletely() throws IOException {
+    StringBuilder json = new StringBuilder("{\"name\": \"\u017dlu\u0165ou\u010dk\u00fd k\u016f\u0148\", \"users\": [");
+    for (int i = 0; i < 30000; i++) {
+      json.append(i == 0 ? "" : ",").append("{\"id\": ").append(i).append(", \"name\": \"P\u0159\u00edli\u0161 \\\"\u017elu\u0165ou\u010dk\u00fd\\\" k\u016f\u0148; ").append(i).append("\"}");
+    }
+    json.append("]}");
+    List<Field> fields = List.of(
+            new CsvField("NAME", "name", false),
+            new CsvField("USER ID", "users[*].id", false),
+            new CsvField("USER NAME", "users[*].name", false)
+    );
+    String actualOutputFilename = Paths.get(TEST_OUTPUT_FOLDER, "large-convert.csv").toString();
+    new File(TEST_OUTPUT_FOLDER).mkdirs();
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    OutputStreamCsvDefinition streamCsvDefinition = new OutputStreamCsvDefinition("Test Convert large", outputStream, fields);
+    jsonToCsvConverter.convert(new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)), streamCsvDefinition);
+
+    for (int bufferSize : new int[]{CsvDefinition.DEFAULT_BUFFER_SIZE, 4096, 5}) {
+      new File(actualOutputFilename).delete();
+      FileCsvDefinition csvDefinition = new FileCsvDefinition("Test Convert large", actualOutputFilename, fields);
+      csvDefinition.setBufferSize(bufferSize);
+
+      jsonToCsvConverter.convert(new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)), csvDefinition);
+
+      byte[] actualOutput = FileUtils.readFileToByteArray(new File(actualOutputFilename));
+      assertTrue(actualOutput.length > bufferSize);
+      assertArrayEquals(outputStream.toByteArray(), actualOutput);
+    }
+  }
+
+  @Test
+  void convertJson__fromMappedFile__isDecodedAsUtf8() throws IOException {
+    String json = "{\"name\": \"\u017dlu\u0165ou\u010dk\u00fd k\u016f\u0148 \ud83d\ude00\", \"users\": [{\"name\": \"P\u0159\u00edli\u0161\"}, {\"name\": \"\u20ac\"}]}";
+    List<Field> fields = List.of(
+            new CsvField("NAME", "name", false),
+            new CsvField("USER NAME", "users[*].name", false)
+    );
+    File source = new File(TEST_OUTPUT_FOLDER, "mapped-input.json");
+    FileUtils.writeStringToFile(source, json, StandardCharsets.UTF_8);
+    ByteArrayOutputStream expectedOutput = new ByteArrayOutputStream();
+    ByteArrayOutputStream actualOutput = new ByteArrayOutputStream();
+
+    jsonToCsvConverter.convert(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), new OutputStreamCsvDefinition("Test Convert mapped", expectedOutput, fields));
+    jsonToCsvConverter.convert(source, new OutputStreamCsvDefinition("Test Convert mapped", actualOutput, fields));
+
+    assertArrayEquals(expectedOutput.toByteArray(), actualOutput.toByteArray());
+
+    File emptySource = new File(TEST_OUTPUT_FOLDER, "empty-input.json");
+    FileUtils.writeStringToFile(emptySource, "", StandardCharsets.UTF_8);
+    assertThrows(IllegalArgumentException.class, () -> jsonToCsvConverter.convert(emptySource, new OutputStreamCsvDefinition("Test Convert empty", new ByteArrayOutputStream(), fields)));
+  }
+
   private void runTest(String inputJsonFilename, String expectedCsvOutputFilename, int expectedNumberOfRowsExcludingHeader, List<Field> fields) throws IOException {
     String actualOutputFilename = Paths.get(TEST_OUTPUT_FOLDER, inputJsonFilename.replace("-input.json", "-convert.csv")).toString();
 
@@ -0,0 +1,153 @@
+import com.jayway.jsonpath.InvalidJsonException;
+import cz.inventi.jsontocsvconverter.JsonToCsvConverter;
+import cz.inventi.jsontocsvconverter.model.CsvDefinition;
+import cz.inventi.jsontocsvconverter.model.CsvField;
+import cz.inventi.jsontocsvconverter.model.Field;
+import cz.inventi.jsontocsvconverter.model.ParallelConversionOptions;
+import cz.inventi.jsontocsvconverter.model.csvdefinitions.FileCsvDefinition;
+import cz.inventi.jsontocsvconverter.model.csvdefinitions.OutputStreamCsvDefinition;
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS) // needed for using @AfterAll
+@Log4j2
+public class JsonToCsvConverterJsonLinesTest {
+
+  private static final String TEST_RESOURCES_INPUT_FOLDER = "src/test/resources/input";
+  private static final String TEST_RESOURCES_OUTPUT_FOLDER = "src/test/resources/output";
+
+  private static final String TEST_OUTPUT_FOLDER = "output";
+  private final JsonToCsvConverter jsonToCsvConverter = new JsonToCsvConverter();
+
+  @BeforeEach
+  @AfterAll
+  void clean() throws IOException {
+    FileUtils.deleteDirectory(new File(TEST_OUTPUT_FOLDER));
+  }
+
+  @Test
+  void convertJsonLines__arrayOfObjects__allFieldsAreOptional() throws IOException {
+    runTest("test16-input.jsonl", "test16.1-output.csv", 6,
+            List.of(
+                    new CsvField("NAME", "name", false),
+                    new CsvField("VERSION", "version", false),
+                    new CsvField("DATE", "date", false),
+                    new CsvField("EMAIL ADDRESS", "emails[*].address", false),
+                    new CsvField("EMAIL ACTIVE", "emails[*].active", false)
+            )
+    );
+  }
+
+  @Test
+  void convertJsonLines__arrayOfObjects__someFieldsAreRequired() throws IOException {
+    runTest("test16-input.jsonl", "test16.2-output.csv", 4,
+            List.of(
+                    new CsvField("NAME", "name", false),
+                    new CsvField("VERSION", "version", false),
+                    new CsvField("DATE", "date", false),
+                    new CsvField("EMAIL ADDRESS", "emails[*].address", false),
+                    new CsvField("EMAIL ACTIVE", "emails[*].active", true)
+            )
+    );
+  }
+
+  @Test
+  void convertJsonLines__parallelOrdered__sameOutputAsSequential() throws IOException {
+    String actualOutputFilename = Paths.get(TEST_OUTPUT_FOLDER, "test16-parallel-ordered.csv").toString();
+    FileCsvDefinition csvDefinition = new FileCsvDefinition("Test Parallel Ordered", actualOutputFilename, getTest16Fields());
+    ParallelConversionOptions options = ParallelConversionOptions.builder().threads(3).chunkSize(1).build();
+
+    jsonToCsvConverter.convertJsonLines(TEST_RESOURCES_INPUT_FOLDER + "/test16-input.jsonl", csvDefinition, options);
+
+    checkOutputFile(csvDefinition, 6, TEST_RESOURCES_OUTPUT_FOLDER + "/test16.1-output.csv");
+  }
+
+  @Test
+  void convertJsonLines__parallelUnordered__sameRowsAsSequential() throws IOException {
+    String actualOutputFilename = Paths.get(TEST_OUTPUT_FOLDER, "test16-parallel-unordered.csv").toString();
+    FileCsvDefinition csvDefinition = new FileCsvDefinition("Test Parallel Unordered", actualOutputFilename, getTest16Fields());
+    ParallelConversionOptions options = ParallelConversionOptions.builder()
+            .threads(2).chunkSize(1).maxChunksInFlight(1).ordered(false).build();
+
+    jsonToCsvConverter.convertJsonLines(TEST_RESOURCES_INPUT_FOLDER + "/test16-input.jsonl", csvDefinition, options);
+
+    List<List<String>> actualCsvOutput = readCsvFile(csvDefinition.getFileName(), csvDefinition);
+    List<List<String>> expectedCsvOutput = readCsvFile(TEST_RESOURCES_OUTPUT_FOLDER + "/test16.1-output.csv", csvDefinition);
+    assertEquals(expectedCsvOutput.get(0), actualCsvOutput.get(0));
+    assertIterableEquals(sortRows(expectedCsvOutput.subList(1, expectedCsvOutput.size())),
+            sortRows(actualCsvOutput.subList(1, actualCsvOutput.size())));
+  }
+
+  @Test
+  void convertJsonLines__moreValuesOnOneLine__isRejectedByAllConversions() {
+    byte[] input = "{\"name\": \"a\"}\n{\"name\": \"b\"} {\"name\": \"c\"}\n".getBytes(StandardCharsets.UTF_8);
+    List<List<Field>> fieldsOfDefinitions = List.of(
+            List.of(new CsvField("NAME", "name", false)),
+            List.of(new CsvField("NAME", "$..name", false))
+    );
+    for (List<Field> fields : fieldsOfDefinitions) {
+      OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test More Values", new ByteArrayOutputStream(), fields);
+      assertThrows(InvalidJsonException.class,
+              () -> jsonToCsvConverter.convertJsonLines(new ByteArrayInputStream(input), csvDefinition));
+      assertThrows(InvalidJsonException.class, () -> jsonToCsvConverter.convertJsonLines(new ByteArrayInputStream(input),
+              csvDefinition, ParallelConversionOptions.builder().threads(2).chunkSize(1).build()));
+    }
+  }
+
+  private List<Field> getTest16Fields() {
+    return List.of(
+            new CsvField("NAME", "name", false),
+            new CsvField("VERSION", "version", false),
+            new CsvField("DATE", "date", false),
+            new CsvField("EMAIL ADDRESS", "emails[*].address", false),
+            new CsvField("EMAIL ACTIVE", "emails[*].active", false)
+    );
+  }
+
+  private List<List<String>> sortRows(List<List<String>> rows) {
+    List<List<String>> sortedRows = new ArrayList<>(rows);
+    sortedRows.sort(Comparator.comparing(Object::toString));
+    return sortedRows;
+  }
+
+  private void runTest(String inputJsonFilename, String expectedCsvOutputFilename, int expectedNumberOfRowsExcludingHeader, List<Field> fields) throws IOException {
+    String actualOutputFilename = Paths.get(TEST_OUTPUT_FOLDER, inputJsonFilename.replace("-input.jsonl", "-convert.csv")).toString();
+
+    FileCsvDefinition csvDefinition = new FileCsvDefinition("Test Convert " + inputJsonFilename, actualOutputFilename, fields);
+
+    jsonToCsvConverter.convertJsonLines(TEST_RESOURCES_INPUT_FOLDER + "/" + inputJsonFilename, csvDefinition);
+
+    checkOutputFile(csvDefinition, expectedNumberOfRowsExcludingHeader, TEST_RESOURCES_OUTPUT_FOLDER + "/" + expectedCsvOutputFilename);
+  }
+
+  private void checkOutputFile(FileCsvDefinition csvDefinition, int expectedNumberOfRowsExcludingHeader, String expectedCsvOutputFilename) throws IOException {
+    List<List<String>> actualCsvOutput = readCsvFile(csvDefinition.getFileName(), csvDefinition);
+    List<List<String>> expectedCsvOutput = readCsvFile(expectedCsvOutputFilename, csvDefinition);
+
+    assertEquals(expectedNumberOfRowsExcludingHeader + 1, actualCsvOutput.size());
+    assertIterableEquals(expectedCsvOutput, actualCsvOutput);
+  }
+
+  private List<List<String>> readCsvFile(String filename, CsvDefinition csvDefinition) throws IOException {
+    List<String> lines = FileUtils.readLines(new File(filename), csvDefinition.getEncoding());
+    return ConverterTestUtil.linesFromFileToListOfLists(lines, csvDefinition.getColumnDelimiter());
+  }
+}
@@ -1,24 +1,42 @@
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.InvalidJsonException;
 import cz.inventi.jsontocsvconverter.JsonToCsvConverter;
+import cz.inventi.jsontocsvconverter.model.ConversionPlan;
+import cz.inventi.jsontocsvconverter.model.CsvDefinition;
 import cz.inventi.jsontocsvconverter.model.CsvField;
 import cz.inventi.jsontocsvconverter.model.Field;
+import cz.inventi.jsontocsvconverter.model.csvdefinitions.DefaultCsvDefinition;
 import cz.inventi.jsontocsvconverter.model.csvdefinitions.OutputStreamCsvDefinition;
+import cz.inventi.jsontocsvconverter.utils.JsonUtils;
 import lombok.extern.log4j.Log4j2;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS) // needed for using @AfterAll
@@ -204,6 +222,396 @@ public class JsonToCsvConverterStreamOutputTest {
         runTest("test13-input.json", "test13-output.csv", 10, ConverterTestUtil.getComplexStructureTestFields());
     }
 
+    @Test
+    void convertJsonFile__propertiesAfterNestedArrays__allFieldsAreOptional() throws IOException {
+        runTest("test15-input.json", "test15-output.csv", 3,
+                List.of(
+                        new CsvField("NAME", "name", false),
+                        new CsvField("VERSION", "version", false),
+                        new CsvField("DATE", "date", false),
+                        new CsvField("ORG ID", "organizations[*].id", false),
+                        new CsvField("ORG NAME", "organizations[*].name", false),
+                        new CsvField("USER ID", "organizations[*].users[*].id", false),
+                        new CsvField("USER NAME", "organizations[*].users[*].name", false)
+                )
+        );
+    }
+
+    @Test
+    void convertJsonFile__outputStreamIsNotClosed() throws IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        OutputStream testOutputStream = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert test8-input.json",
+                testOutputStream, List.of(
+                        new CsvField("ORG ID", "organizations[*].id", false),
+                        new CsvField("USER ID", "organizations[*].users[*].id", false)
+                ));
+
+        convertInputStreamJsonToCsv(ConverterTestUtil.inputStreamFromFile(TEST_RESOURCES_INPUT_FOLDER + "/test8-input.json"),
+                csvDefinition);
+
+        assertFalse(closed.get());
+        assertEquals(7, ConverterTestUtil.outputStreamToListOfLists(testOutputStream, csvDefinition.getColumnDelimiter()).size());
+    }
+
+    @Test
+    void convertJsonFile__bufferedOutputStreamIsFlushed() throws IOException {
+        List<Field> fields = List.of(
+                new CsvField("ORG ID", "organizations[*].id", false),
+                new CsvField("USER ID", "organizations[*].users[*].id", false)
+        );
+        OutputStream expectedOutput = new ByteArrayOutputStream();
+        convertInputStreamJsonToCsv(ConverterTestUtil.inputStreamFromFile(TEST_RESOURCES_INPUT_FOLDER + "/test8-input.json"),
+                new OutputStreamCsvDefinition("Test Convert test8-input.json", expectedOutput, fields));
+
+        for (int writeQueueDepth : new int[]{0, 2}) {
+            ByteArrayOutputStream target = new ByteArrayOutputStream();
+            OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert test8-input.json",
+                    new BufferedOutputStream(target, 64 * 1024), fields);
+            csvDefinition.setWriteQueueDepth(writeQueueDepth);
+
+            convertInputStreamJsonToCsv(ConverterTestUtil.inputStreamFromFile(TEST_RESOURCES_INPUT_FOLDER + "/test8-input.json"),
+                    csvDefinition);
+
+            assertEquals(expectedOutput.toString(), target.toString());
+        }
+    }
+
+    @Test
+    void convertJsonFile__compiledPlanIsReused() throws IOException {
+        OutputStream testOutputStream = new ByteArrayOutputStream();
+        OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert test9-input.json",
+                testOutputStream, List.of(
+                        new CsvField("NAME", "name", false),
+                        new CsvField("VERSION", "version", false),
+                        new CsvField("DATE", "date", false),
+                        new CsvField("ORG ID", "organizations[*].id", false),
+                        new CsvField("ORG NAME", "organizations[*].name", false),
+                        new CsvField("USER ID", "organizations[*].users[*].id", false),
+                        new CsvField("USER NAME", "organizations[*].users[*].name", false),
+                        new CsvField("GROUP NAME", "organizations[*].users[*].groups[*].name", false),
+                        new CsvField("PERMISSION NAME", "organizations[*].users[*].groups[*].permissions[*]", false)
+                ));
+        ConversionPlan plan = new ConversionPlan(csvDefinition);
+
+        jsonToCsvConverter.convert(ConverterTestUtil.inputStreamFromFile(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json"), plan);
+        jsonToCsvConverter.convert(new File(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json"), plan);
+
+        List<List<String>> expectedOutput = new ArrayList<>(readTargetOutputFromCsv("test9-output.csv", csvDefinition.getEncoding(), csvDefinition.getColumnDelimiter()));
+        expectedOutput.addAll(List.copyOf(expectedOutput));
+        assertIterableEquals(expectedOutput, ConverterTestUtil.outputStreamToListOfLists(testOutputStream, csvDefinition.getColumnDelimiter()));
+    }
+
+    @Test
+    void convertJsonFile__compiledPlanIsReusedWithOtherOutput() throws IOException {
+        List<Field> fields = List.of(
+                new CsvField("NAME", "name", false),
+                new CsvField("ORG ID", "organizations[*].id", false),
+                new CsvField("USER ID", "organizations[*].users[*].id", false)
+        );
+        OutputStream firstOutputStream = new ByteArrayOutputStream();
+        OutputStream secondOutputStream = new ByteArrayOutputStream();
+        OutputStreamCsvDefinition firstCsvDefinition = new OutputStreamCsvDefinition("Test Convert test9-input.json",
+                firstOutputStream, fields);
+        ConversionPlan plan = new ConversionPlan(firstCsvDefinition);
+        ConversionPlan secondPlan = plan.withOutput(new OutputStreamCsvDefinition("Test Convert test9-input.json again",
+                secondOutputStream, fields));
+
+        jsonToCsvConverter.convert(new File(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json"), plan);
+        jsonToCsvConverter.convert(new File(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json"), secondPlan);
+
+        assertEquals(firstOutputStream.toString(), secondOutputStream.toString());
+        assertEquals(plan.getColumns(), secondPlan.getColumns());
+        assertThrows(UnsupportedOperationException.class, () -> plan.getPathsTree().getChildren().clear());
+        assertThrows(IllegalArgumentException.class, () -> plan.withOutput(new OutputStreamCsvDefinition("Other fields",
+                new ByteArrayOutputStream(), fields.subList(0, 2))));
+    }
+
+    @Test
+    void convertJsonFile__objectOnArrayPosition__sameOutputForAllInputs() throws IOException {
+        List<List<Field>> fieldsOfDefinitions = List.of(
+                List.of(
+                        new CsvField("NAME", "name", false),
+                        new CsvField("ITEM ID", "items[*].id", false)
+                ),
+                List.of(
+                        new CsvField("NAME", "name", false),
+                        new CsvField("FIRST ITEM ID", "items[0].id", false),
+                        new CsvField("ITEM ID", "items[*].id", false)
+                )
+        );
+        File source = new File(TEST_RESOURCES_INPUT_FOLDER + "/test17-input.json");
+        for (List<Field> fields : fieldsOfDefinitions) {
+            OutputStream fileOutput = new ByteArrayOutputStream();
+            OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert test17-input.json", fileOutput, fields);
+            jsonToCsvConverter.convert(source, csvDefinition);
+            assertEquals(4, ConverterTestUtil.outputStreamToListOfLists(fileOutput, csvDefinition.getColumnDelimiter()).size());
+
+            OutputStream streamOutput = new ByteArrayOutputStream();
+            convertInputStreamJsonToCsv(ConverterTestUtil.inputStreamFromFile(source.getPath()),
+                    new OutputStreamCsvDefinition("Test Convert test17-input.json", streamOutput, fields));
+            assertEquals(fileOutput.toString(), streamOutput.toString());
+        }
+    }
+
+    @Test
+    void convertJsonFile__malformedJson__isRejected() {
+        List<Field> fields = List.of(
+                new CsvField("NAME", "name", false),
+                new CsvField("ITEM ID", "items[*].id", false)
+        );
+        List<String> documents = List.of(
+                "{\"name\": \"n\" \"items\": [{\"id\": 1}, {\"id\": 2}]}",
+                "{\"name\": \"n\", \"items\": [{\"id\": 1} {\"id\": 2}]}",
+                "{, \"name\": \"n\"}",
+                "{\"name\": \"n\", \"items\": [, {\"id\": 1}]}",
+                "{\"name\": \"n\",, \"items\": []}"
+        );
+        for (String document : documents) {
+            OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert malformed", new ByteArrayOutputStream(), fields);
+            assertThrows(InvalidJsonException.class, () -> convertInputStreamJsonToCsv(
+                    new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)), csvDefinition), document);
+        }
+    }
+
+    @Test
+    void streamRows__rowsAreGeneratedLazily() throws IOException {
+        AtomicInteger mappedRows = new AtomicInteger();
+        OutputStream testOutputStream = new ByteArrayOutputStream();
+        OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert test9-input.json",
+                testOutputStream, List.of(
+                        new CsvField("NAME", "name", false),
+                        new CsvField("VERSION", "version", false),
+                        new CsvField("DATE", "date", false),
+                        new CsvField("ORG ID", "organizations[*].id", false),
+                        new CsvField("ORG NAME", "organizations[*].name", false),
+                        new CsvField("USER ID", "organizations[*].users[*].id", false),
+                        // not pure mapper is applied for every generated row
+                        new CsvField("USER NAME", "organizations[*].users[*].name", false, (field, value) -> {
+                            mappedRows.incrementAndGet();
+                            return List.of(value);
+                        }, false),
+                        new CsvField("GROUP NAME", "organizations[*].users[*].groups[*].name", false),
+                        new CsvField("PERMISSION NAME", "organizations[*].users[*].groups[*].permissions[*]", false)
+                ));
+        List<List<String>> expectedOutput = readTargetOutputFromCsv("test9-output.csv", csvDefinition.getEncoding(), csvDefinition.getColumnDelimiter());
+
+        List<List<String>> rows = jsonToCsvConverter.streamRows(new File(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json"), csvDefinition)
+                .collect(Collectors.toList());
+        assertIterableEquals(expectedOutput.subList(1, expectedOutput.size()), rows);
+        assertEquals(rows.size(), mappedRows.get());
+
+        mappedRows.set(0);
+        Stream<List<String>> rowStream = jsonToCsvConverter.streamRows(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json", csvDefinition);
+        assertEquals(0, mappedRows.get());
+        List<List<String>> firstRows = rowStream
+                .limit(2)
+                .collect(Collectors.toList());
+        assertIterableEquals(expectedOutput.subList(1, 3), firstRows);
+        assertEquals(2, mappedRows.get());
+        assertEquals(0, ((ByteArrayOutputStream) testOutputStream).size());
+    }
+
+    @Test
+    void streamRows__onlyEmptyJsonPath__noRowIsGenerated() throws IOException {
+        OutputStream testOutputStream = new ByteArrayOutputStream();
+        OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert test9-input.json",
+                testOutputStream, List.of(new CsvField("EMPTY", DefaultCsvDefinition.EMPTY_JSON_PATH)));
+
+        jsonToCsvConverter.convert(new File(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json"), csvDefinition);
+        List<List<String>> rows = jsonToCsvConverter.streamRows(new File(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json"), csvDefinition)
+                .collect(Collectors.toList());
+
+        assertEquals(1, ConverterTestUtil.outputStreamToListOfLists(testOutputStream, csvDefinition.getColumnDelimiter()).size());
+        assertIterableEquals(List.of(), rows);
+    }
+
+    @Test
+    void convertJsonFile__writtenByWriterThread() throws IOException {
+        OutputStream testOutputStream = new ByteArrayOutputStream();
+        OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert test9-input.json",
+                testOutputStream, List.of(
+                        new CsvField("NAME", "name", false),
+                        new CsvField("ORG NAME", "organizations[*].name", false),
+                        new CsvField("USER NAME", "organizations[*].users[*].name", false),
+                        new CsvField("GROUP NAME", "organizations[*].users[*].groups[*].name", false),
+                        new CsvField("PERMISSION NAME", "organizations[*].users[*].groups[*].permissions[*]", false)
+                ));
+        csvDefinition.setWriteQueueDepth(2);
+        csvDefinition.setBufferSize(16);
+
+        jsonToCsvConverter.convert(new File(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json"), csvDefinition);
+        String asyncOutput = testOutputStream.toString();
+
+        ((ByteArrayOutputStream) testOutputStream).reset();
+        csvDefinition.setWriteQueueDepth(0);
+        jsonToCsvConverter.convert(new File(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json"), csvDefinition);
+        assertEquals(testOutputStream.toString(), asyncOutput);
+    }
+
+    @Test
+    void convertJsonFile__errorOfWriterThreadIsThrown() {
+        OutputStream failingOutputStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Target is not writable.");
+            }
+        };
+        OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert test9-input.json",
+                failingOutputStream, List.of(
+                        new CsvField("USER NAME", "organizations[*].users[*].name", false),
+                        new CsvField("PERMISSION NAME", "organizations[*].users[*].groups[*].permissions[*]", false)
+                ));
+        csvDefinition.setWriteQueueDepth(1);
+        csvDefinition.setBufferSize(16);
+
+        IOException exception = assertThrows(IOException.class,
+                () -> jsonToCsvConverter.convert(new File(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json"), csvDefinition));
+        assertEquals("Target is not writable.", exception.getCause().getMessage());
+    }
+
+    @Test
+    void convertJsonFile__moreDefinitionsFromOneParsedDocument() throws IOException {
+        List<List<Field>> fieldsOfDefinitions = List.of(
+                List.of(
+                        new CsvField("NAME", "name", false),
+                        new CsvField("VERSION", "version", false)
+                ),
+                List.of(
+                        new CsvField("ORG ID", "organizations[*].id", false),
+                        new CsvField("USER NAME", "organizations[*].users[*].name", false)
+                ),
+                List.of(
+                        new CsvField("USER ID", "organizations[*].users[*].id", false),
+                        new CsvField("PERMISSION NAME", "organizations[*].users[*].groups[*].permissions[*]", false)
+                )
+        );
+        File source = new File(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json");
+        List<String> expectedOutputs = new ArrayList<>();
+        for (List<Field> fields : fieldsOfDefinitions) {
+            OutputStream outputStream = new ByteArrayOutputStream();
+            jsonToCsvConverter.convert(source, new OutputStreamCsvDefinition("Test Convert test9-input.json", outputStream, fields));
+            expectedOutputs.add(outputStream.toString());
+        }
+
+        for (int threads : new int[]{1, 3}) {
+            List<OutputStream> outputStreams = new ArrayList<>();
+            List<CsvDefinition> csvDefinitions = new ArrayList<>();
+            for (List<Field> fields : fieldsOfDefinitions) {
+                OutputStream outputStream = new ByteArrayOutputStream();
+                outputStreams.add(outputStream);
+                csvDefinitions.add(new OutputStreamCsvDefinition("Test Convert test9-input.json", outputStream, fields));
+            }
+
+            jsonToCsvConverter.convert(source, csvDefinitions, threads);
+
+            assertEquals(expectedOutputs, outputStreams.stream().map(Object::toString).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void convertJsonFile__fromBytesAndParsedDocument() throws IOException {
+        List<Field> fields = List.of(
+                new CsvField("NAME", "name", false),
+                new CsvField("USER ID", "organizations[*].users[*].id", false),
+                new CsvField("PERMISSION NAME", "organizations[*].users[*].groups[*].permissions[*]", false)
+        );
+        File source = new File(TEST_RESOURCES_INPUT_FOLDER + "/test9-input.json");
+        OutputStream expectedOutput = new ByteArrayOutputStream();
+        jsonToCsvConverter.convert(source, new OutputStreamCsvDefinition("Test Convert test9-input.json", expectedOutput, fields));
+
+        byte[] bytes = FileUtils.readFileToByteArray(source);
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length);
+        directBuffer.put(bytes).flip();
+        DocumentContext jsonContext = JsonUtils.parseJson(ByteBuffer.wrap(bytes));
+        Map<String, Object> json = jsonContext.read("$");
+        List<Converter> conversions = List.of(
+                csvDefinition -> jsonToCsvConverter.convert(bytes, csvDefinition),
+                csvDefinition -> jsonToCsvConverter.convert(directBuffer, csvDefinition),
+                csvDefinition -> jsonToCsvConverter.convert(jsonContext, csvDefinition),
+                csvDefinition -> jsonToCsvConverter.convert(json, csvDefinition)
+        );
+        for (Converter conversion : conversions) {
+            OutputStream outputStream = new ByteArrayOutputStream();
+            conversion.convert(new OutputStreamCsvDefinition("Test Convert test9-input.json", outputStream, fields));
+            assertEquals(expectedOutput.toString(), outputStream.toString());
+        }
+        assertEquals(0, directBuffer.position());
+    }
+
+    @Test
+    void convertJsonFile__splitToItemsOfArray() throws IOException {
+        List<Field> fields = List.of(
+                new CsvField("VERSION", "meta.version", false),
+                new CsvField("COUNT", "data.count", false),
+                new CsvField("ITEM ID", "data.items[*].id", true),
+                new CsvField("ITEM TAG", "data.items[*].tags[*]", false)
+        );
+        List<String> documents = List.of(
+                "{\"meta\": {\"version\": \"1.0\"}, \"data\": {\"count\": 3, \"items\": ["
+                        + "{\"id\": 1, \"tags\": [\"a\", \"b\"]}, {\"tags\": [\"c\"]}, {\"id\": 3, \"tags\": []}]}}",
+                "{\"data\": {\"items\": [{\"id\": 1, \"tags\": [\"a\"]}, {\"id\": 2}], \"count\": 2}, \"meta\": {\"version\": \"2.0\"}}",
+                "{\"meta\": {\"version\": \"3.0\"}, \"data\": {\"items\": []}}"
+        );
+        for (String document : documents) {
+            OutputStream expectedOutput = new ByteArrayOutputStream();
+            jsonToCsvConverter.convert(JsonUtils.parseJson(document), new OutputStreamCsvDefinition("Test Convert split", expectedOutput, fields));
+
+            OutputStream actualOutput = new ByteArrayOutputStream();
+            OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert split", actualOutput, fields);
+            csvDefinition.setSplitPath("data.items[*]");
+            jsonToCsvConverter.convert(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)), csvDefinition);
+
+            assertEquals(expectedOutput.toString(), actualOutput.toString());
+        }
+
+        OutputStreamCsvDefinition invalidCsvDefinition = new OutputStreamCsvDefinition("Test Convert split", new ByteArrayOutputStream(),
+                List.of(new CsvField("ITEM ID", "data.items[*].id", false), new CsvField("TAG", "meta.tags[*]", false)));
+        invalidCsvDefinition.setSplitPath("data.items[*]");
+        assertThrows(IllegalArgumentException.class, () -> new ConversionPlan(invalidCsvDefinition));
+    }
+
+    @Test
+    void convertJsonFile__splitToItemsOfArray__itemsAreConvertedWhenTheirObjectEnds() {
+        AtomicInteger mappedItems = new AtomicInteger();
+        List<Field> fields = List.of(
+                new CsvField("VERSION", "meta.version", false),
+                new CsvField("COUNT", "data.count", false),
+                new CsvField("ITEM ID", "data.items[*].id", false, (field, value) -> {
+                    mappedItems.incrementAndGet();
+                    return List.of(value);
+                })
+        );
+        List<String> incompleteDocuments = List.of(
+                "{\"meta\": {\"version\": \"1.0\"}, \"data\": {\"items\": [{\"id\": 1}, {\"id\": 2}]}, \"tail\": ",
+                "{\"meta\": {\"version\": \"1.0\"}, \"data\": {\"items\": [{\"id\": 1}, {\"id\": 2}], \"count\": 2}, \"tail\": "
+        );
+        for (String document : incompleteDocuments) {
+            mappedItems.set(0);
+            OutputStreamCsvDefinition csvDefinition = new OutputStreamCsvDefinition("Test Convert split", new ByteArrayOutputStream(), fields);
+            csvDefinition.setSplitPath("data.items[*]");
+            InputStream failingInput = new SequenceInputStream(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)),
+                    new InputStream() {
+                        @Override
+                        public int read() throws IOException {
+                            throw new IOException("Input is not readable.");
+                        }
+                    });
+
+            assertThrows(IOException.class, () -> jsonToCsvConverter.convert(failingInput, csvDefinition));
+            // items aren't kept until the end of the document, when the missing value can't follow them
+            assertEquals(2, mappedItems.get());
+        }
+    }
+
+    private interface Converter {
+        void convert(CsvDefinition csvDefinition) throws IOException;
+    }
 
     private void runTest(String inputJsonFilename, String expectedCsvOutputFilename, int expectedNumberOfRowsExcludingHeader, List<Field> fields) throws IOException {
         OutputStream testOutputStream = new ByteArrayOutputStream();
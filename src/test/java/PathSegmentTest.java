@@ -0,0 +1,60 @@
+import cz.inventi.jsontocsvconverter.model.PathSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class PathSegmentTest {
+
+    @Test
+    void parse__rootPrefixedAndBarePaths__giveTheSameSegments() {
+        List<PathSegment> expected = List.of(PathSegment.property("organizations"), PathSegment.index(PathSegment.ANY_INDEX),
+                PathSegment.property("users"), PathSegment.index(0), PathSegment.property("id"));
+
+        assertEquals(expected, PathSegment.parse("organizations[*].users[0].id"));
+        assertEquals(expected, PathSegment.parse("$.organizations[*].users[0].id"));
+        assertEquals(expected, PathSegment.parse("$['organizations'][*]['users'][0]['id']"));
+        assertEquals(expected, PathSegment.parse("['organizations'][*].users[0]['id']"));
+    }
+
+    @Test
+    void parse__documentAndItsItems() {
+        assertEquals(List.of(), PathSegment.parse("$"));
+        assertEquals(List.of(PathSegment.index(PathSegment.ANY_INDEX), PathSegment.property("id")), PathSegment.parse("$[*].id"));
+        assertEquals(List.of(PathSegment.index(3)), PathSegment.parse("[3]"));
+    }
+
+    @Test
+    void parse__bracketNamesWithDotsAndSpaces__areOneProperty() {
+        assertEquals(List.of(PathSegment.property("a.b"), PathSegment.property("c")), PathSegment.parse("$['a.b'].c"));
+        assertEquals(List.of(PathSegment.property("first name")), PathSegment.parse("['first name']"));
+        assertEquals(List.of(PathSegment.property("a"), PathSegment.property("[x]")), PathSegment.parse("a['[x]']"));
+    }
+
+    @Test
+    void parse__unsupportedSyntax__isNull() {
+        // quotes, escapes, unions and wildcards in bracket names
+        assertNull(PathSegment.parse("['it's']"));
+        assertNull(PathSegment.parse("['a\\'b']"));
+        assertNull(PathSegment.parse("['a','b']"));
+        assertNull(PathSegment.parse("['*']"));
+        assertNull(PathSegment.parse("[\"name\"]"));
+        assertNull(PathSegment.parse("['']"));
+        assertNull(PathSegment.parse("['name'"));
+        // quotes and functions in dot-notation
+        assertNull(PathSegment.parse("it's"));
+        assertNull(PathSegment.parse("items.length()"));
+        // deep scan, filters, slices and dots without property
+        assertNull(PathSegment.parse("$..name"));
+        assertNull(PathSegment.parse("items[?(@.active)].name"));
+        assertNull(PathSegment.parse("items[0:2]"));
+        assertNull(PathSegment.parse("items[1234567890]"));
+        assertNull(PathSegment.parse(".name"));
+        assertNull(PathSegment.parse("name."));
+        assertNull(PathSegment.parse("$."));
+        assertNull(PathSegment.parse(""));
+        assertNull(PathSegment.parse(null));
+    }
+}